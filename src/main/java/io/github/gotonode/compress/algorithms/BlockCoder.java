@@ -0,0 +1,34 @@
+package io.github.gotonode.compress.algorithms;
+
+import java.io.IOException;
+
+/**
+ * Codes data one block at a time, in memory. Every block is coded on its own, so the
+ * blocks can be coded in any order (and in parallel). Used by the block mode of Huffman
+ * and the chunked mode of LZW, as well as by {@link CompressingOutputStream} and
+ * {@link DecompressingInputStream}.
+ * <p>
+ * An instance holds no state between blocks, so it can be shared by all threads.
+ */
+public interface BlockCoder {
+
+    /**
+     * Compresses a block of data.
+     *
+     * @param data   The data to compress.
+     * @param length How many bytes of the array belong to the block.
+     * @return The compressed block.
+     * @throws IOException If we can't write the compressed block.
+     */
+    byte[] encode(byte[] data, int length) throws IOException;
+
+    /**
+     * Decompresses a block of data.
+     *
+     * @param data   The compressed block.
+     * @param length How many bytes the block held before it was compressed.
+     * @return The decompressed data.
+     * @throws IOException If the block is corrupted.
+     */
+    byte[] decode(byte[] data, int length) throws IOException;
+}
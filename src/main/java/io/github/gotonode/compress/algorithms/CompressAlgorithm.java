@@ -1,5 +1,7 @@
 package io.github.gotonode.compress.algorithms;
 
+import io.github.gotonode.compress.utils.PhaseProfiler;
+
 /**
  * This interface is used by both Huffman and LZW.
  */
@@ -19,6 +21,14 @@ public interface CompressAlgorithm {
      */
     boolean decompress();
 
+    /**
+     * Sets the profiler that times the phases of the next compression or decompression.
+     * Without one, nothing is measured.
+     *
+     * @param profiler The profiler to use, or {@link PhaseProfiler#DISABLED} to turn profiling off.
+     */
+    void setProfiler(PhaseProfiler profiler);
+
     /**
      * This has to implemented. It'll contain the name of the algorithm as well as the short names
      * (e.g. "nice_picture.jpeg") for the input and output files. Primarily for debug purposes.
@@ -0,0 +1,307 @@
+package io.github.gotonode.compress.algorithms;
+
+import io.github.gotonode.compress.algorithms.huffman.AdaptiveHuffmanTree;
+import io.github.gotonode.compress.algorithms.huffman.Huffman;
+import io.github.gotonode.compress.algorithms.lzw.LZW;
+import io.github.gotonode.compress.enums.Algorithms;
+import io.github.gotonode.compress.enums.HuffmanModes;
+import io.github.gotonode.compress.io.BinaryWriteTool;
+import io.github.gotonode.compress.main.Main;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Compresses everything that is written into it, and writes the compressed data into
+ * another stream. Lets Huffman and LZW be used without any files, for an example to
+ * compress data on its way into a socket.
+ * <p>
+ * The data is collected into blocks, which are compressed in parallel just like in the
+ * block mode of {@link Huffman} and the chunked mode of {@link LZW}. The output is in
+ * those same formats, so it can be decompressed either as a file or with
+ * {@link DecompressingInputStream}. As the length of the data isn't known beforehand,
+ * the length in the header is {@link Main#UNKNOWN_LENGTH}.
+ * <p>
+ * Huffman can also be used in the adaptive mode, which codes each byte as soon as it's
+ * written, on a single thread. The output is then in the format of the adaptive mode.
+ * <p>
+ * {@link #flush()} compresses whatever has been written so far as a block of its own,
+ * so flushing often makes the compression worse. In the adaptive mode, flushing costs
+ * nothing, but the last few bits are held back until they make up a whole byte.
+ * {@link #close()} must be called to end the data.
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    private final DataOutputStream dataOutputStream;
+
+    private final BlockCoder blockCoder;
+
+    // The data of the next block.
+    private final byte[] block;
+    private int length;
+
+    // Used instead of the blocks in the adaptive mode.
+    private final AdaptiveHuffmanTree adaptiveHuffmanTree;
+    private final BinaryWriteTool binaryWriteTool;
+
+    // Only a few blocks per thread are kept in memory at once.
+    private final ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private final int maxPendingBlocks = forkJoinPool.getParallelism() * 2;
+
+    private final Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private final Queue<Integer> pendingLengths = new ArrayDeque<>();
+
+    private boolean closed;
+
+    /**
+     * Creates a new compressing stream, and writes the header into the output stream.
+     * Huffman uses the block mode with blocks of {@link Main#HUFFMAN_BLOCK_SIZE} bytes.
+     * LZW uses the chunked mode with chunks of {@link Main#LZW_CHUNK_SIZE} bytes and the
+     * longest codewords.
+     *
+     * @param outputStream The stream the compressed data is written to. Closed along with this one.
+     * @param algorithm    Which algorithm to compress with.
+     * @throws IOException If we can't write the header.
+     */
+    public CompressingOutputStream(OutputStream outputStream, Algorithms algorithm) throws IOException {
+        this(outputStream, algorithm, HuffmanModes.BLOCK);
+    }
+
+    /**
+     * Creates a new compressing stream that uses Huffman in the given mode, and writes the
+     * header into the output stream. The blocks are {@link Main#HUFFMAN_BLOCK_SIZE} bytes.
+     *
+     * @param outputStream The stream the compressed data is written to. Closed along with this one.
+     * @param mode         The block, interleaved or adaptive mode.
+     * @throws IOException If we can't write the header.
+     */
+    public CompressingOutputStream(OutputStream outputStream, HuffmanModes mode) throws IOException {
+        this(outputStream, Algorithms.HUFFMAN, mode);
+    }
+
+    private CompressingOutputStream(OutputStream outputStream, Algorithms algorithm, HuffmanModes mode)
+            throws IOException {
+
+        this.dataOutputStream = new DataOutputStream(outputStream);
+
+        if (algorithm == Algorithms.HUFFMAN && mode == HuffmanModes.ADAPTIVE) {
+
+            this.blockCoder = null;
+            this.block = null;
+
+            dataOutputStream.writeInt(Main.HUFFMAN_ADAPTIVE_CODE);
+            dataOutputStream.writeLong(Main.UNKNOWN_LENGTH);
+
+            this.adaptiveHuffmanTree = new AdaptiveHuffmanTree();
+            this.binaryWriteTool = new BinaryWriteTool(dataOutputStream);
+
+            return;
+        }
+
+        this.adaptiveHuffmanTree = null;
+        this.binaryWriteTool = null;
+
+        if (algorithm == Algorithms.HUFFMAN) {
+
+            if (mode != HuffmanModes.BLOCK && mode != HuffmanModes.INTERLEAVED) {
+                throw new IllegalArgumentException("Only the block, interleaved and adaptive modes can be"
+                        + " compressed as a stream.");
+            }
+
+            this.blockCoder = Huffman.createBlockCoder(mode == HuffmanModes.INTERLEAVED);
+            this.block = new byte[Main.HUFFMAN_BLOCK_SIZE];
+
+            dataOutputStream.writeInt(mode == HuffmanModes.INTERLEAVED
+                    ? Main.HUFFMAN_INTERLEAVED_CODE : Main.HUFFMAN_BLOCK_CODE);
+            dataOutputStream.writeLong(Main.UNKNOWN_LENGTH);
+
+        } else { // It's LZW.
+
+            this.blockCoder = LZW.createBlockCoder(Main.CODEWORD_WIDTH);
+            this.block = new byte[Main.LZW_CHUNK_SIZE];
+
+            dataOutputStream.writeInt(Main.LZW_CHUNKED_CODE);
+            dataOutputStream.writeLong(Main.UNKNOWN_LENGTH);
+
+            // The longest codeword width, and no preset dictionary.
+            dataOutputStream.write(Main.CODEWORD_WIDTH);
+            dataOutputStream.writeInt(0);
+        }
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+
+        ensureOpen();
+
+        if (adaptiveHuffmanTree != null) {
+            adaptiveHuffmanTree.encode(value & 0xff, binaryWriteTool);
+            return;
+        }
+
+        block[length++] = (byte) value;
+
+        if (length == block.length) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int count) throws IOException {
+
+        ensureOpen();
+
+        if (offset < 0 || count < 0 || count > data.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (adaptiveHuffmanTree != null) {
+
+            for (int i = offset; i < offset + count; i++) {
+                adaptiveHuffmanTree.encode(data[i] & 0xff, binaryWriteTool);
+            }
+
+            return;
+        }
+
+        int index = offset;
+        int remaining = count;
+
+        while (remaining > 0) {
+
+            int copied = Math.min(remaining, block.length - length);
+
+            System.arraycopy(data, index, block, length, copied);
+
+            length += copied;
+            index += copied;
+            remaining -= copied;
+
+            if (length == block.length) {
+                submitBlock();
+            }
+        }
+    }
+
+    /**
+     * Compresses the data written so far (even if it doesn't fill a whole block), and
+     * writes it into the output stream.
+     *
+     * @throws IOException If we can't compress or write the data.
+     */
+    @Override
+    public void flush() throws IOException {
+
+        ensureOpen();
+
+        if (adaptiveHuffmanTree != null) {
+            binaryWriteTool.flush();
+            return;
+        }
+
+        if (length > 0) {
+            submitBlock();
+        }
+
+        while (!pendingBlocks.isEmpty()) {
+            writeBlock();
+        }
+
+        dataOutputStream.flush();
+    }
+
+    /**
+     * Compresses the rest of the data, ends the data and closes the output stream.
+     *
+     * @throws IOException If we can't compress or write the data.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (adaptiveHuffmanTree != null) {
+                adaptiveHuffmanTree.encode(AdaptiveHuffmanTree.END_OF_DATA, binaryWriteTool);
+                binaryWriteTool.flushAndClose();
+                return;
+            }
+
+            flush();
+
+            // No more blocks.
+            dataOutputStream.writeInt(0);
+        } finally {
+            // The output stream is closed even if the last blocks couldn't be written.
+            closed = true;
+            dataOutputStream.close();
+        }
+    }
+
+    /**
+     * Hands the current block over to the fork/join pool to be compressed, and starts
+     * a new one. If there are too many blocks waiting, the oldest one is written first.
+     *
+     * @throws IOException If we can't compress or write the oldest block.
+     */
+    private void submitBlock() throws IOException {
+
+        // Only the part in use is copied, as a flush may leave the block nearly empty.
+        byte[] data = Arrays.copyOf(block, length);
+        int blockLength = length;
+
+        pendingBlocks.add(forkJoinPool.submit(() -> blockCoder.encode(data, blockLength)));
+        pendingLengths.add(blockLength);
+
+        length = 0;
+
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Waits for the oldest block to be compressed, and writes it into the output stream
+     * as its original length, its compressed length and the compressed block itself.
+     *
+     * @throws IOException If the block couldn't be compressed, or we can't write it.
+     */
+    private void writeBlock() throws IOException {
+
+        byte[] compressedData;
+
+        try {
+            compressedData = pendingBlocks.poll().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+
+        dataOutputStream.writeInt(pendingLengths.poll());
+        dataOutputStream.writeInt(compressedData.length);
+        dataOutputStream.write(compressedData);
+    }
+
+    /**
+     * Makes sure that the stream hasn't been closed yet.
+     *
+     * @throws IOException If the stream has been closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The stream has been closed.");
+        }
+    }
+}
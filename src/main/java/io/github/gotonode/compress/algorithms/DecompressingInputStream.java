@@ -0,0 +1,399 @@
+package io.github.gotonode.compress.algorithms;
+
+import io.github.gotonode.compress.algorithms.huffman.AdaptiveHuffmanTree;
+import io.github.gotonode.compress.algorithms.huffman.Huffman;
+import io.github.gotonode.compress.algorithms.lzw.LZW;
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.main.Main;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Decompresses data read from another stream. The counterpart of
+ * {@link CompressingOutputStream}, but it can also read files compressed with Huffman in
+ * the block, interleaved or adaptive mode, or with LZW in the chunked mode without a preset.
+ * <p>
+ * The adaptive mode is a single stream of bits, which is decoded a byte at a time as it's
+ * read. The other formats that aren't split into blocks need to know their code lengths or
+ * dictionary up front, so they need to be decompressed as files.
+ * <p>
+ * Blocks that have already arrived in full are read ahead and decompressed in parallel,
+ * while the earlier ones are being read from this stream. Only the block that is needed
+ * next is waited for.
+ */
+public class DecompressingInputStream extends InputStream {
+
+    private final DataInputStream dataInputStream;
+
+    private final BlockCoder blockCoder;
+
+    // Used instead of the blocks in the adaptive mode.
+    private final AdaptiveHuffmanTree adaptiveHuffmanTree;
+    private final BinaryReadTool binaryReadTool;
+
+    // Only a few blocks per thread are kept in memory at once.
+    private final ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+    private final int maxPendingBlocks = forkJoinPool.getParallelism() * 2;
+
+    private final Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    // The block that is being read, and how much of it has been read.
+    private byte[] block = new byte[0];
+    private int position;
+
+    // The lengths of the next block, once they have been read ahead of the block itself.
+    private boolean headerRead;
+    private int nextLength;
+    private int nextCompressedLength;
+
+    // Set once the block that ends the data has been read.
+    private boolean endOfData;
+
+    private boolean closed;
+
+    /**
+     * Creates a new decompressing stream, and reads the header from the input stream.
+     *
+     * @param inputStream The stream the compressed data is read from. Closed along with this one.
+     * @throws IOException If we can't read the header, or the data is in a format that
+     *                     can't be decompressed as a stream.
+     */
+    public DecompressingInputStream(InputStream inputStream) throws IOException {
+
+        this.dataInputStream = new DataInputStream(inputStream);
+
+        int code;
+
+        try {
+            code = dataInputStream.readInt();
+
+            // The length of the data isn't needed, as each block has its own.
+            dataInputStream.readLong();
+
+            if (code == Main.HUFFMAN_BLOCK_CODE || code == Main.HUFFMAN_INTERLEAVED_CODE) {
+
+                this.blockCoder = Huffman.createBlockCoder(code == Main.HUFFMAN_INTERLEAVED_CODE);
+                this.adaptiveHuffmanTree = null;
+                this.binaryReadTool = null;
+
+            } else if (code == Main.LZW_CHUNKED_CODE) {
+
+                int codewordWidth = dataInputStream.readUnsignedByte();
+                int presetId = dataInputStream.readInt();
+
+                if (codewordWidth < Main.CODEWORD_MIN_WIDTH || codewordWidth > Main.CODEWORD_WIDTH) {
+                    throw new IOException("Corrupted file.");
+                }
+
+                if (presetId != 0) {
+                    throw new IOException("The data needs the preset dictionary "
+                            + Integer.toHexString(presetId) + ", so it must be decompressed as a file.");
+                }
+
+                this.blockCoder = LZW.createBlockCoder(codewordWidth);
+                this.adaptiveHuffmanTree = null;
+                this.binaryReadTool = null;
+
+            } else if (code == Main.HUFFMAN_ADAPTIVE_CODE) {
+
+                this.blockCoder = null;
+
+                this.adaptiveHuffmanTree = new AdaptiveHuffmanTree();
+                this.binaryReadTool = new BinaryReadTool(dataInputStream);
+
+            } else if (code == Main.HUFFMAN_OLD_CODE || code == Main.LZW_OLD_CODE) {
+                throw new IOException("Unsupported format version.");
+            } else if (Huffman.isHuffmanCode(code) || LZW.isLZWCode(code)) {
+                throw new IOException("Only the block, interleaved, adaptive and chunked modes can be decompressed"
+                        + " as a stream.");
+            } else {
+                throw new IOException("Corrupted file.");
+            }
+        } catch (EOFException ex) {
+            throw new IOException("Corrupted file.", ex);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+
+        if (adaptiveHuffmanTree != null) {
+            ensureOpen();
+            return readAdaptive();
+        }
+
+        if (!ensureData()) {
+            return -1;
+        }
+
+        return block[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] data, int offset, int count) throws IOException {
+
+        if (offset < 0 || count < 0 || count > data.length - offset) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+
+        if (adaptiveHuffmanTree != null) {
+            return readAdaptive(data, offset, count);
+        }
+
+        if (!ensureData()) {
+            return -1;
+        }
+
+        int copied = Math.min(count, block.length - position);
+
+        System.arraycopy(block, position, data, offset, copied);
+
+        position += copied;
+
+        return copied;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return block.length - position;
+    }
+
+    /**
+     * Closes this stream and the input stream. Blocks that were read ahead are thrown away.
+     *
+     * @throws IOException If we can't close the input stream.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        for (Future<byte[]> pendingBlock : pendingBlocks) {
+            pendingBlock.cancel(false);
+        }
+
+        pendingBlocks.clear();
+
+        dataInputStream.close();
+    }
+
+    /**
+     * Makes sure that there's something left to read in the current block, moving on to
+     * the next block if needed.
+     *
+     * @return True if there's data to read, false if the end of the data was reached.
+     * @throws IOException If the data is corrupted or can't be read.
+     */
+    private boolean ensureData() throws IOException {
+
+        ensureOpen();
+
+        while (position == block.length) {
+
+            // Nothing to hand out yet, so this one has to wait for the input.
+            if (!endOfData && pendingBlocks.isEmpty()) {
+
+                if (!headerRead) {
+                    readHeader();
+                }
+
+                if (!endOfData) {
+                    submitBlock();
+                }
+            }
+
+            readAhead();
+
+            if (pendingBlocks.isEmpty()) {
+                return false;
+            }
+
+            block = takeBlock();
+            position = 0;
+        }
+
+        return true;
+    }
+
+    /**
+     * Decodes bytes in the adaptive mode into the array, until it's full or the data ends.
+     *
+     * @param data   The array to decode into.
+     * @param offset Where in the array to start from.
+     * @param count  How many bytes to decode at most.
+     * @return How many bytes were decoded, or -1 if the data had already ended.
+     * @throws IOException If the data is corrupted or can't be read.
+     */
+    private int readAdaptive(byte[] data, int offset, int count) throws IOException {
+
+        ensureOpen();
+
+        int decoded = 0;
+
+        while (decoded < count) {
+
+            int character = readAdaptive();
+
+            if (character < 0) {
+                break;
+            }
+
+            data[offset + decoded++] = (byte) character;
+        }
+
+        return decoded == 0 ? -1 : decoded;
+    }
+
+    /**
+     * Decodes the next byte in the adaptive mode. Only as much is read from the input
+     * stream as is needed for it, so nothing is waited for in advance.
+     *
+     * @return The byte, or -1 once the data has ended.
+     * @throws IOException If the data is corrupted or can't be read.
+     */
+    private int readAdaptive() throws IOException {
+
+        if (endOfData) {
+            return -1;
+        }
+
+        // The data must end with the end of data character, not just run out.
+        if (!binaryReadTool.streamHasData()) {
+            throw new IOException("Corrupted file.");
+        }
+
+        int character = adaptiveHuffmanTree.decode(binaryReadTool);
+
+        if (character == AdaptiveHuffmanTree.END_OF_DATA) {
+            endOfData = true;
+            return -1;
+        }
+
+        return character;
+    }
+
+    /**
+     * Keeps the pool busy with the blocks after the current one, but only with what has
+     * already arrived. A block is only read once all of it can be read without waiting,
+     * as over a socket the rest may not have been sent yet.
+     *
+     * @throws IOException If a block is corrupted or can't be read.
+     */
+    private void readAhead() throws IOException {
+
+        while (!endOfData && pendingBlocks.size() < maxPendingBlocks) {
+
+            if (!headerRead) {
+
+                // The lengths of the block take two integers.
+                if (dataInputStream.available() < 2 * Integer.BYTES) {
+                    return;
+                }
+
+                readHeader();
+
+            } else if (dataInputStream.available() >= nextCompressedLength) {
+                submitBlock();
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the original and the compressed length of the next block, or finds out that
+     * there are no more blocks.
+     *
+     * @throws IOException If the lengths are corrupted or can't be read.
+     */
+    private void readHeader() throws IOException {
+
+        try {
+            nextLength = dataInputStream.readInt();
+
+            if (nextLength == 0) {
+                endOfData = true;
+                return;
+            }
+
+            nextCompressedLength = dataInputStream.readInt();
+
+        } catch (EOFException ex) {
+            throw new IOException("Corrupted file.", ex);
+        }
+
+        if (nextLength < 0 || nextCompressedLength < 0) {
+            throw new IOException("Corrupted file.");
+        }
+
+        headerRead = true;
+    }
+
+    /**
+     * Reads the compressed block whose lengths have just been read, and hands it over to
+     * the fork/join pool to be decompressed.
+     *
+     * @throws IOException If the block can't be read.
+     */
+    private void submitBlock() throws IOException {
+
+        byte[] compressedData = new byte[nextCompressedLength];
+        int length = nextLength;
+
+        try {
+            dataInputStream.readFully(compressedData);
+        } catch (EOFException ex) {
+            throw new IOException("Corrupted file.", ex);
+        }
+
+        headerRead = false;
+
+        pendingBlocks.add(forkJoinPool.submit(() -> blockCoder.decode(compressedData, length)));
+    }
+
+    /**
+     * Waits for the oldest block to be decompressed.
+     *
+     * @return The decompressed block.
+     * @throws IOException If the block couldn't be decompressed.
+     */
+    private byte[] takeBlock() throws IOException {
+        try {
+            return pendingBlocks.poll().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            throw new IOException(ex.getCause());
+        }
+    }
+
+    /**
+     * Makes sure that the stream hasn't been closed yet.
+     *
+     * @throws IOException If the stream has been closed.
+     */
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("The stream has been closed.");
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package io.github.gotonode.compress.algorithms.huffman;
+
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.io.BinaryWriteTool;
+import io.github.gotonode.compress.main.Main;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This is the tree used by adaptive Huffman coding. Unlike the normal (static) Huffman tree,
+ * it is not built from the weights beforehand. Instead, the tree starts out empty and is
+ * updated after every character, so that the data only needs to be read once.
+ * <p>
+ * The compressor and the decompressor update their trees in the exact same way, so the
+ * trees don't need to be stored in the compressed file.
+ * <p>
+ * A character that hasn't been seen yet is coded with the code of a special "not yet
+ * transmitted" (NYT) node, followed by the character itself. A special end of data
+ * character marks the end, so the length of the data doesn't need to be known beforehand.
+ * <p>
+ * This is the FGK (Faller-Gallager-Knuth) algorithm. The tree is kept in arrays, where
+ * the index of a node is also its number. Node numbers grow with the weights, and the
+ * root has the highest number. The tree never has more than 2 * 257 + 1 nodes.
+ * <p>
+ * The tree codes one character at a time into any {@link BinaryWriteTool}, and reads
+ * from any {@link BinaryReadTool}, so it's also used to compress streams.
+ * <p>
+ * Sources:
+ * • <a href="https://en.wikipedia.org/wiki/Adaptive_Huffman_coding">Adaptive Huffman coding</a> (Wikipedia)
+ */
+public class AdaptiveHuffmanTree {
+
+    // This character marks the end of the data. It's the first one after the alphabet.
+    public static final int END_OF_DATA = Main.ALPHABET_SIZE;
+
+    // All of the characters, plus the end of data character.
+    private static final int SYMBOL_COUNT = Main.ALPHABET_SIZE + 1;
+
+    // How many bits are used to write a new character after the NYT code.
+    private static final int SYMBOL_WIDTH = Main.BITS_IN_A_BYTE + 1;
+
+    // Every character has a leaf, and every leaf except the first one comes with an internal node.
+    private static final int NODE_COUNT = 2 * SYMBOL_COUNT + 1;
+
+    private static final int ROOT = NODE_COUNT - 1;
+
+    // Used in the symbol array to mark nodes that aren't leaves.
+    private static final int INTERNAL_NODE = -1;
+    private static final int NYT_NODE = -2;
+
+    // Used as the parent of the root, and for characters that have no leaf yet.
+    private static final int NONE = -1;
+
+    // Longs, as the root counts every character, and files can be longer than 2^31 bytes.
+    private final long[] weights = new long[NODE_COUNT];
+    private final int[] parents = new int[NODE_COUNT];
+    private final int[] leftNodes = new int[NODE_COUNT];
+    private final int[] rightNodes = new int[NODE_COUNT];
+    private final int[] symbols = new int[NODE_COUNT];
+
+    // The leaf of each character, or NONE if the character hasn't been seen yet.
+    private final int[] leaves = new int[SYMBOL_COUNT];
+
+    // Holds the bits of a code while it's being written, as they're found from leaf to root.
+    private final boolean[] path = new boolean[NODE_COUNT];
+
+    // The current NYT node, and the next free node number.
+    private int nytNode;
+    private int nextNode;
+
+    /**
+     * Creates an empty tree, where the root is the NYT node.
+     */
+    public AdaptiveHuffmanTree() {
+        Arrays.fill(leaves, NONE);
+
+        nytNode = ROOT;
+        nextNode = ROOT - 1;
+
+        parents[ROOT] = NONE;
+        symbols[ROOT] = NYT_NODE;
+    }
+
+    /**
+     * Writes the code of the character into the stream, and updates the tree.
+     *
+     * @param symbol          The character (or {@link #END_OF_DATA}) to write.
+     * @param binaryWriteTool The stream to write to.
+     * @throws IOException If we can't write to the stream.
+     */
+    public void encode(int symbol, BinaryWriteTool binaryWriteTool) throws IOException {
+
+        int leaf = leaves[symbol];
+
+        if (leaf == NONE) {
+            // A new character. Write the NYT code first, then the character itself.
+            writePath(nytNode, binaryWriteTool);
+            binaryWriteTool.writeBits(symbol, SYMBOL_WIDTH);
+        } else {
+            writePath(leaf, binaryWriteTool);
+        }
+
+        update(symbol);
+    }
+
+    /**
+     * Reads the next character from the stream, and updates the tree.
+     *
+     * @param binaryReadTool The stream to read from.
+     * @return The character, or {@link #END_OF_DATA} once the data ends.
+     * @throws IOException If we can't read from the stream, or if the file is corrupted.
+     */
+    public int decode(BinaryReadTool binaryReadTool) throws IOException {
+
+        int node = ROOT;
+
+        // Walk from the root to a leaf, one bit at a time.
+        while (symbols[node] == INTERNAL_NODE) {
+            if (binaryReadTool.readBool()) {
+                node = rightNodes[node];
+            } else {
+                node = leftNodes[node];
+            }
+        }
+
+        int symbol = symbols[node];
+
+        if (symbol == NYT_NODE) {
+            // A new character follows the NYT code.
+            symbol = (int) binaryReadTool.readBits(SYMBOL_WIDTH);
+
+            if (symbol >= SYMBOL_COUNT || leaves[symbol] != NONE) {
+                throw new IOException("Corrupted file.");
+            }
+        }
+
+        update(symbol);
+
+        return symbol;
+    }
+
+    /**
+     * Writes the code of a node, which is the path from the root to that node.
+     *
+     * @param node            The node whose code is written.
+     * @param binaryWriteTool The stream to write to.
+     * @throws IOException If we can't write to the stream.
+     */
+    private void writePath(int node, BinaryWriteTool binaryWriteTool) throws IOException {
+
+        int length = 0;
+
+        // The path is found from the node up to the root, so it's stored first
+        // and then written in reverse.
+        while (node != ROOT) {
+            int parent = parents[node];
+            path[length++] = rightNodes[parent] == node;
+            node = parent;
+        }
+
+        for (int i = length - 1; i >= 0; i--) {
+            if (path[i]) {
+                binaryWriteTool.writeOneBit();
+            } else {
+                binaryWriteTool.writeZeroBit();
+            }
+        }
+    }
+
+    /**
+     * Adds one to the weight of the character, and to the weights of the nodes above it.
+     * Nodes are swapped on the way up so that the tree stays a valid Huffman tree.
+     *
+     * @param symbol The character that was just coded.
+     */
+    private void update(int symbol) {
+
+        int node = leaves[symbol];
+
+        if (node == NONE) {
+            // The NYT node splits into a new NYT node (left) and a leaf for the character (right).
+            int oldNytNode = nytNode;
+
+            node = nextNode--;
+            nytNode = nextNode--;
+
+            symbols[oldNytNode] = INTERNAL_NODE;
+            rightNodes[oldNytNode] = node;
+            leftNodes[oldNytNode] = nytNode;
+
+            parents[node] = oldNytNode;
+            parents[nytNode] = oldNytNode;
+
+            symbols[node] = symbol;
+            symbols[nytNode] = NYT_NODE;
+
+            leaves[symbol] = node;
+        }
+
+        while (node != NONE) {
+
+            // Find the node with the highest number among those of the same weight.
+            int leader = node;
+
+            while (leader < ROOT && weights[leader + 1] == weights[node]) {
+                leader++;
+            }
+
+            if (leader != node && leader != parents[node]) {
+                swap(node, leader);
+                node = leader;
+            }
+
+            weights[node]++;
+
+            node = parents[node];
+        }
+    }
+
+    /**
+     * Swaps the subtrees at the two given node numbers. The nodes themselves stay
+     * in place along with their parents, while what's below them changes places.
+     *
+     * @param first  The first node number.
+     * @param second The second node number.
+     */
+    private void swap(int first, int second) {
+
+        long weight = weights[first];
+        weights[first] = weights[second];
+        weights[second] = weight;
+
+        swapValues(leftNodes, first, second);
+        swapValues(rightNodes, first, second);
+        swapValues(symbols, first, second);
+
+        adopt(first);
+        adopt(second);
+
+        if (nytNode == first) {
+            nytNode = second;
+        } else if (nytNode == second) {
+            nytNode = first;
+        }
+    }
+
+    /**
+     * Points the children (or the character) of a node that just moved back to it.
+     *
+     * @param node The node number.
+     */
+    private void adopt(int node) {
+
+        int symbol = symbols[node];
+
+        if (symbol == INTERNAL_NODE) {
+            parents[leftNodes[node]] = node;
+            parents[rightNodes[node]] = node;
+        } else if (symbol != NYT_NODE) {
+            leaves[symbol] = node;
+        }
+    }
+
+    /**
+     * An extremely simple swap function for two values in an array.
+     *
+     * @param array  The array to swap the values in.
+     * @param first  The first index.
+     * @param second The second index.
+     */
+    private static void swapValues(int[] array, int first, int second) {
+        int temp = array[first];
+        array[first] = array[second];
+        array[second] = temp;
+    }
+}
@@ -1,15 +1,25 @@
 package io.github.gotonode.compress.algorithms.huffman;
 
+import io.github.gotonode.compress.algorithms.BlockCoder;
 import io.github.gotonode.compress.algorithms.CompressAlgorithm;
+import io.github.gotonode.compress.enums.HuffmanModes;
+import io.github.gotonode.compress.enums.ProfilerCounters;
+import io.github.gotonode.compress.enums.ProfilerPhases;
 import io.github.gotonode.compress.io.BinaryReadTool;
 import io.github.gotonode.compress.io.BinaryWriteTool;
 import io.github.gotonode.compress.main.Main;
 import io.github.gotonode.compress.ui.UiController;
-import io.github.gotonode.compress.utils.MinQueue;
+import io.github.gotonode.compress.utils.PhaseProfiler;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * This class contains my personal Huffman coding implementation.
@@ -25,7 +35,31 @@ import java.io.IOException;
  * the character 'A' is 01000001. Huffman coding can encode 'A' to be 01 or 0110
  * for an example, potentially saving a lot of space.
  * <p>
- * Uses {@link HuffmanNode} internally.
+ * The codes are canonical Huffman codes, so only the code length of each character is
+ * stored in the compressed file instead of the whole tree.
+ * <p>
+ * Optionally, the code lengths can be limited with {@link #setMaxCodeLength(int)}. For very
+ * large files, the weights can be estimated from samples of the data with
+ * {@link #setSampling(boolean)}, so that the data is read only once.
+ * <p>
+ * If coding the data wouldn't make it any smaller (judging by the weights, before any
+ * coding is done), the data is stored as it is instead.
+ * <p>
+ * In the adaptive mode (see {@link #setMode(HuffmanModes)}), the data is read only once and
+ * the codes are updated as the data is read, using {@link AdaptiveHuffmanTree}.
+ * <p>
+ * In the block mode, the data is split into blocks (see {@link #setBlockSize(int)}) that
+ * each get codes of their own. The blocks are coded in parallel, using {@link HuffmanBlockCoder}.
+ * The interleaved mode works the same way, but splits each block into 4 streams that
+ * can be decoded side by side.
+ * <p>
+ * In the order-1 mode, the codes of each character are chosen by the character before
+ * it, using {@link HuffmanContextModel}.
+ * <p>
+ * The time spent in each phase can be measured with {@link #setProfiler(PhaseProfiler)}.
+ * <p>
+ * Uses {@link HuffmanCanonicalCodes}, {@link HuffmanLengthLimiter} and {@link HuffmanDecodeTable}
+ * internally.
  * <p>
  * Sources:
  * • <a href="https://en.wikipedia.org/wiki/Huffman_coding">Huffman coding</a> (Wikipedia)
@@ -34,12 +68,33 @@ import java.io.IOException;
  */
 public class Huffman implements CompressAlgorithm {
 
+    // How many bytes are copied at once when the data is stored as it is.
+    private static final int COPY_BUFFER_SIZE = 64 * Main.BYTES_IN_A_KILOBYTE;
+
     private final File source;
     private final File target;
 
     private BinaryWriteTool binaryWriteTool;
     private BinaryReadTool binaryReadTool;
 
+    // Which kind of Huffman coding is used when compressing.
+    private HuffmanModes mode = HuffmanModes.STATIC;
+
+    // The longest allowed code length when compressing. Zero means no limit.
+    private int maxCodeLength;
+
+    // How much bigger (as a percentage) the coded data got because of the code length limit.
+    private double lengthLimitCost;
+
+    // How many bytes each block holds in the block mode.
+    private int blockSize = Main.HUFFMAN_BLOCK_SIZE;
+
+    // Whether the weights are estimated from samples of the data in the static mode.
+    private boolean sampling;
+
+    // Times the phases of compressing and decompressing.
+    private PhaseProfiler profiler = PhaseProfiler.DISABLED;
+
     /**
      * Creates a new Huffman object. This is used to compress/decompress a file using Huffman coding.
      *
@@ -67,6 +122,125 @@ public class Huffman implements CompressAlgorithm {
 
     }
 
+    /**
+     * Chooses which kind of Huffman coding is used when compressing. The default is
+     * {@link HuffmanModes#STATIC}. When decompressing, the mode is detected from the file.
+     *
+     * @param mode The mode to use.
+     */
+    public void setMode(HuffmanModes mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Checks whether the given identification code (the first integer of a file)
+     * belongs to any of the Huffman modes.
+     *
+     * @param code The identification code read from the file.
+     * @return True if the file has been compressed with Huffman, false otherwise.
+     */
+    public static boolean isHuffmanCode(int code) {
+        return code == Main.HUFFMAN_CODE
+                || code == Main.HUFFMAN_ADAPTIVE_CODE
+                || code == Main.HUFFMAN_BLOCK_CODE
+                || code == Main.HUFFMAN_INTERLEAVED_CODE
+                || code == Main.HUFFMAN_ORDER1_CODE;
+    }
+
+    /**
+     * Limits how long the Huffman codes can get when compressing. Without a limit, very
+     * skewed data can produce codes that are longer than 32 bits. Limiting the length
+     * costs a little bit of compression, see {@link #getLengthLimitCost()}.
+     * <p>
+     * The limit is not needed for decompressing, as the code lengths are stored in the file.
+     *
+     * @param maxCodeLength The longest allowed code length in bits (at least 8, as there
+     *                      are 256 characters), or 0 for no limit.
+     */
+    public void setMaxCodeLength(int maxCodeLength) {
+
+        if (maxCodeLength != 0 && (maxCodeLength < Main.BITS_IN_A_BYTE || maxCodeLength >= Long.SIZE)) {
+            throw new IllegalArgumentException("Invalid code length limit: " + maxCodeLength);
+        }
+
+        this.maxCodeLength = maxCodeLength;
+    }
+
+    /**
+     * Sets how many bytes each block holds in the block mode. Smaller blocks follow the
+     * data more closely, but each block has to store its own code lengths.
+     * <p>
+     * The block size is not needed for decompressing, as it is stored in the file.
+     *
+     * @param blockSize The size of a block in bytes. The default is {@link Main#HUFFMAN_BLOCK_SIZE}.
+     */
+    public void setBlockSize(int blockSize) {
+
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Chooses whether the static mode estimates the weights from samples of the data
+     * (see {@link HuffmanSampler}) instead of counting every character. The data is
+     * then read only once, which saves a lot of time with files that are gigabytes in
+     * size. The codes are a little bit worse, as they're based on an estimate and every
+     * character needs a code. Files smaller than the samples are always counted in full.
+     * <p>
+     * Sampling is not needed for decompressing, as the code lengths are stored in the file.
+     *
+     * @param sampling True to sample the data, false to read all of it. The default is false.
+     */
+    public void setSampling(boolean sampling) {
+        this.sampling = sampling;
+    }
+
+    @Override
+    public void setProfiler(PhaseProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Tells how much compression was lost due to the code length limit on the
+     * last compression. This is zero if no codes had to be shortened. In the block
+     * and interleaved modes, it covers all of the blocks together. The adaptive mode
+     * has no limit, so there it's always zero.
+     *
+     * @return The increase in the size of the coded data, as a percentage.
+     */
+    public double getLengthLimitCost() {
+        return lengthLimitCost;
+    }
+
+    /**
+     * Stores how much the code length limit cost on this compression.
+     *
+     * @param lengthLimitCost The increase in the size of the coded data, as a percentage.
+     */
+    private void setLengthLimitCost(double lengthLimitCost) {
+
+        this.lengthLimitCost = lengthLimitCost;
+
+        if (Main.DEBUG) {
+            System.out.println("Code length limit of " + maxCodeLength + " bits costs "
+                    + lengthLimitCost + " % in size.");
+        }
+    }
+
+    /**
+     * Creates a coder that codes single blocks in the format of the block mode (or the
+     * interleaved mode). Used to compress and decompress streams block by block.
+     *
+     * @param interleaved True for the format of the interleaved mode, false for the block mode.
+     * @return The block coder, which can be shared by all threads.
+     */
+    public static BlockCoder createBlockCoder(boolean interleaved) {
+        return new HuffmanBlockCoder(0, interleaved);
+    }
+
     @Override
     public String toString() {
         return "Huffman{" +
@@ -76,15 +250,46 @@ public class Huffman implements CompressAlgorithm {
     }
 
     /**
-     * Compresses the input file and produces the output file. Please
-     * refer to the comments in this method for a more in-depth look.
+     * Compresses the input file and produces the output file, using the
+     * mode chosen with {@link #setMode(HuffmanModes)}.
      *
      * @return True if the operation succeeded, false otherwise.
      */
     @Override
     public boolean compress() {
 
-        int dataLength = 0;
+        lengthLimitCost = 0.0d;
+
+        if (mode == HuffmanModes.ADAPTIVE) {
+            return compressAdaptive();
+        }
+
+        if (mode == HuffmanModes.BLOCK) {
+            return compressBlocks(false);
+        }
+
+        if (mode == HuffmanModes.INTERLEAVED) {
+            return compressBlocks(true);
+        }
+
+        if (mode == HuffmanModes.ORDER1) {
+            return compressOrder1();
+        }
+
+        return compressStatic();
+    }
+
+    /**
+     * Compresses the input file and produces the output file. Please
+     * refer to the comments in this method for a more in-depth look.
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean compressStatic() {
+
+        long dataLength = 0;
+
+        profiler.start(ProfilerPhases.IO);
 
         // Write an integer to indicate that this file is Huffman coded.
         try {
@@ -94,123 +299,178 @@ public class Huffman implements CompressAlgorithm {
             return false;
         }
 
-        int[] weights = new int[Main.ALPHABET_SIZE];
-
-        // While the stream (file) has data to read, read one character
-        // at a time, increase its weight by one and update how
-        // many bytes we have read thus far.
-        while (binaryReadTool.streamHasData()) {
+        long[] weights = new long[Main.ALPHABET_SIZE];
 
-            try {
-                char character = binaryReadTool.readChar();
+        profiler.start(ProfilerPhases.HISTOGRAM);
 
-                weights[character]++;
+        if (sampling) {
 
-                dataLength++; // One more byte was read in.
+            // The weights are estimated from samples, and the data is only read while coding it.
+            dataLength = source.length();
 
+            try {
+                weights = HuffmanSampler.sample(source, dataLength);
             } catch (IOException ex) {
                 UiController.printErrorMessage(ex);
                 return false;
             }
+
+        } else {
+
+            // While the stream (file) has data to read, read one character
+            // at a time, increase its weight by one and update how
+            // many bytes we have read thus far.
+            while (binaryReadTool.streamHasData()) {
+
+                try {
+                    char character = binaryReadTool.readChar();
+
+                    weights[character]++;
+
+                    dataLength++; // One more byte was read in.
+
+                } catch (IOException ex) {
+                    UiController.printErrorMessage(ex);
+                    return false;
+                }
+            }
         }
 
         // Write the length of the data into the output file. This
-        // is measured in bytes (8 bits).
+        // is measured in bytes (8 bits), and stored as a 64-bit long.
         try {
-            binaryWriteTool.writeInt(dataLength);
+            binaryWriteTool.writeLong(dataLength);
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
-        // We'll build and assign the Huffman root node. This will
-        // also contain the entire tree, traversable from the root.
-        HuffmanNode rootHuffmanNode = buildTree(weights);
+        // Build the Huffman tree from the weights. Only the depth of each character
+        // in the tree is needed. The codes themselves are assigned in the canonical
+        // order based on those.
+        profiler.start(ProfilerPhases.TREE_BUILD);
 
-        if (Main.DEBUG) {
-            System.out.println("Root Huffman node:");
-            System.out.println(rootHuffmanNode);
-        }
+        HuffmanCanonicalCodes canonicalCodes = HuffmanCanonicalCodes.fromWeights(weights, maxCodeLength);
+
+        // Find out how much the code length limit cost, compared to no limit at all.
+        if (maxCodeLength > 0) {
 
-        // This will build the table used to find the binary representation
-        // (in String format) quickly by means of the array's index.
-        String[] table = new String[Main.ALPHABET_SIZE];
+            long unlimitedBits = HuffmanCanonicalCodes.fromWeights(weights, 0).countCodedBits(weights);
+            long limitedBits = canonicalCodes.countCodedBits(weights);
 
-        buildTable(table, rootHuffmanNode, "");
+            setLengthLimitCost(HuffmanCanonicalCodes.getLengthLimitCost(limitedBits, unlimitedBits));
+        }
+
+        // The code of each character and how many bits it takes, found quickly
+        // by means of the array's index.
+        long[] codes = canonicalCodes.getCodes();
+        int[] writtenLengths = canonicalCodes.getWrittenLengths();
 
         if (Main.DEBUG) {
-            for (int i = 0; i < table.length; i++) {
-                String representation = table[i];
-                if (representation != null) {
-                    // Example: 65=1010
-                    System.out.println(i + "=" + representation);
+            for (int i = 0; i < codes.length; i++) {
+                if (writtenLengths[i] > 0) {
+                    // Example: 65=1010 (4 bits)
+                    System.out.println(i + "=" + Long.toBinaryString(codes[i]) + " (" + writtenLengths[i] + " bits)");
                 }
             }
         }
 
-        // Print the binary tree to the output file. This is
+        // The data is read again from the start, unless it was sampled. The sampler reads
+        // the file on its own, so then nothing has been read yet.
+        if (!sampling) {
+            try {
+                binaryReadTool.reset();
+            } catch (IOException ex) {
+                UiController.printErrorMessage(ex);
+                return false;
+            }
+        }
+
+        // If the coded data (along with the code lengths) wouldn't be any smaller than
+        // the data itself, the data is stored as it is. This way no time is spent on
+        // coding data that can't be compressed, such as images that already are.
+        // With sampling, the weights add up to the size of the samples instead.
+        if (canonicalCodes.estimateSize(weights) >= Arrays.stream(weights).sum()) {
+            return compressStored(dataLength);
+        }
+
+        // Print the code lengths to the output file. These are
         // later used to decompress the file. Adds overhead,
         // so smaller files might actually get bigger after they
         // have been compressed through Huffman.
-        try {
-            writeTree(rootHuffmanNode);
-        } catch (IOException ex) {
-            UiController.printErrorMessage(ex);
-            return false;
-        }
+        profiler.start(ProfilerPhases.IO);
 
         try {
-            binaryReadTool.reset();
+            binaryWriteTool.write(HuffmanBlockCoder.CODED);
+            canonicalCodes.write(binaryWriteTool);
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
-        // Iterate over each character in the input data, looking up the binary
-        // representation of it and writing it to the output stream.
+        // Iterate over each character in the input data, looking up its code
+        // and writing it to the output stream.
         //
         // For an example, if the first character in the data is a 'A', which has
-        // a code of 65, we'll look up the binary representation from the String array
-        // at index 65, and get a 1010 (demonstration value only), and then write
-        // the bits out to the output file.
-        for (int index = 0; index < dataLength; index++) {
+        // a code of 65, we'll look up the code from the arrays at index 65, and
+        // get a 1010 that is 4 bits long (demonstration value only), and then write
+        // those 4 bits out to the output file at once.
+        profiler.start(ProfilerPhases.ENCODE);
+
+        for (long index = 0; index < dataLength; index++) {
 
-            // The current character from the input stream.
-            char character = 0;
             try {
-                character = binaryReadTool.readChar();
+                // The current character from the input stream.
+                char character = binaryReadTool.readChar();
+
+                // The code of the current character. This value varies from file to
+                // file, and is based on the character's respective weights in the data.
+                binaryWriteTool.writeBits(codes[character], writtenLengths[character]);
+
             } catch (IOException ex) {
                 UiController.printErrorMessage(ex);
                 return false;
             }
+        }
 
-            // The binary representation of the current character. This value
-            // varies from file to file, and is based on the character's respective
-            // weights in the data.
-            String binaryRepresentation = table[character];
+        profiler.start(ProfilerPhases.IO);
 
-            // Loop through the binary representation of the character and write
-            // it to the output stream, one bit at a time (the stream is buffered).
-            for (int indexInner = 0; indexInner < binaryRepresentation.length(); indexInner++) {
-                char currentChar = binaryRepresentation.charAt(indexInner);
+        try {
+            // Write the bits to the file and close the stream. It cannot be reused.
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
+        }
 
-                try {
-                    if (currentChar == '0') {
-                        // Writes a zero into the output stream.
-                        binaryWriteTool.writeZeroBit();
-                    } else { // It's not a '0' so it's a '1'.
-                        // Writes a one into the output stream.
-                        binaryWriteTool.writeOneBit();
-                    }
-                } catch (IOException ex) {
-                    UiController.printErrorMessage(ex);
-                    return false;
-                }
-            }
+        profiler.stop();
+
+        // The compression operation succeeded, so a true is returned.
+        return true;
+    }
+
+    /**
+     * Writes the data into the output file as it is, marked as stored. Used when coding
+     * the data wouldn't make it any smaller. The identification code and the length of
+     * the data have already been written, and the data is read from the start.
+     *
+     * @param dataLength How many bytes the data has.
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean compressStored(long dataLength) {
+
+        if (Main.DEBUG) {
+            System.out.println("Coding would not make the data smaller, so it's stored as it is.");
         }
 
+        profiler.start(ProfilerPhases.IO);
+
         try {
-            // Write the bits to the file and close the stream. It cannot be reused.
+            binaryWriteTool.write(HuffmanBlockCoder.STORED);
+
+            copyData(dataLength);
+
             binaryWriteTool.flushAndClose();
             binaryReadTool.close();
         } catch (IOException ex) {
@@ -218,17 +478,66 @@ public class Huffman implements CompressAlgorithm {
             return false;
         }
 
-        // The compression operation succeeded, so a true is returned.
+        profiler.stop();
+
         return true;
     }
 
+    /**
+     * Copies bytes from the input straight into the output, as many at a time as possible.
+     *
+     * @param length How many bytes to copy.
+     * @throws IOException If we can't read or write, or if the input ends too early.
+     */
+    private void copyData(long length) throws IOException {
+
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+
+        long remaining = length;
+
+        while (remaining > 0) {
+
+            int count = binaryReadTool.readBytes(buffer, (int) Math.min(buffer.length, remaining));
+
+            if (count == 0) {
+                throw new IOException("Corrupted file.");
+            }
+
+            binaryWriteTool.writeBytes(buffer, 0, count);
+
+            remaining -= count;
+        }
+    }
+
     @Override
     public boolean decompress() {
 
+        boolean success = false;
+
+        try {
+            success = decompressFile();
+        } finally {
+            if (!success) {
+                closeAfterFailure();
+            }
+        }
+
+        return success;
+    }
+
+    /**
+     * Decompresses the file, in whichever mode it was compressed in.
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean decompressFile() {
+
         // Read the first integer in. It is used to determine what algorithm
-        // was used to compress this file.
+        // was used to compress this file, and in which mode.
         int code;
 
+        profiler.start(ProfilerPhases.IO);
+
         try {
             code = binaryReadTool.readInt();
         } catch (IOException ex) {
@@ -236,59 +545,147 @@ public class Huffman implements CompressAlgorithm {
             return false;
         }
 
+        if (code == Main.HUFFMAN_ADAPTIVE_CODE) {
+            return decompressAdaptive();
+        }
+
+        if (code == Main.HUFFMAN_BLOCK_CODE) {
+            return decompressBlocks(false);
+        }
+
+        if (code == Main.HUFFMAN_INTERLEAVED_CODE) {
+            return decompressBlocks(true);
+        }
+
+        if (code == Main.HUFFMAN_ORDER1_CODE) {
+            return decompressOrder1();
+        }
+
+        if (code == Main.HUFFMAN_OLD_CODE) {
+            throw new RuntimeException("Unsupported format version.");
+        }
+
         // If the identification 32-bit integer is not what we'd expect for this algorithm.
         if (code != Main.HUFFMAN_CODE) {
             throw new RuntimeException("Corrupted file.");
         }
 
-        // We'll read (as a 32-bit integer) the data area's length from
-        // the file. A compressed file always has this byte.
-        Integer dataLength = null;
+        return decompressStatic();
+    }
+
+    /**
+     * Closes the files after decompressing has failed. The output file is cut back to
+     * what was decompressed before the failure, instead of being left at its full size.
+     */
+    private void closeAfterFailure() {
+
+        // The files might not have been opened at all.
+        if (binaryReadTool == null || binaryWriteTool == null) {
+            return;
+        }
+
+        try {
+            binaryWriteTool.closeAfterFailure();
+            binaryReadTool.close();
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+        }
+    }
+
+    /**
+     * Sets the length of the output file to the length of the data stored in the header.
+     * The header isn't trusted as it is, so the output file is made at most
+     * {@link Main#PREALLOCATION_MAX_RATIO} times as big as the compressed file. Data that
+     * compresses better than that is still decompressed, the file just grows past it.
+     *
+     * @param dataLength The length of the data, from the header.
+     * @throws IOException If we can't grow the output file.
+     */
+    private void preallocate(long dataLength) throws IOException {
+        binaryWriteTool.preallocate(Math.min(dataLength, source.length() * Main.PREALLOCATION_MAX_RATIO));
+    }
+
+    /**
+     * Decompresses a file that was compressed in the static mode. The identification
+     * code has already been read.
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean decompressStatic() {
+
+        // We'll read (as a 64-bit long) the data area's length from
+        // the file. A compressed file always has this long.
+        long dataLength;
 
         try {
-            dataLength = binaryReadTool.readInt();
+            dataLength = binaryReadTool.readLong();
+
+            // The output file is made as big as the data right away.
+            preallocate(dataLength);
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
-        HuffmanNode huffmanRootNode = null;
-
-        // After the data length, we'll read the actual Huffman tree
-        // from the compressed file.
+        // The data might have been stored as it is, if coding it wouldn't have made it smaller.
         try {
-            huffmanRootNode = readTreeFromFile();
+            if (binaryReadTool.readChar() == HuffmanBlockCoder.STORED) {
+
+                copyData(dataLength);
+
+                binaryWriteTool.flushAndClose();
+                binaryReadTool.close();
+
+                profiler.stop();
+
+                return true;
+            }
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
-        // Now that we have the tree, we can start decompressing the
-        // data and writing the characters to output as we go.
+        // After the data length, we'll read the code lengths from the
+        // compressed file and build the lookup table from their codes.
+        // Instead of walking a tree one bit at a time, each character
+        // is looked up from the table using several bits at once.
         try {
-            for (int i = 0; i < dataLength; i++) {
-                // Start from the root node.
-                HuffmanNode huffmanNode = huffmanRootNode;
-
-                // Loop until we reach a leaf.
-                while (!huffmanNode.isLeafNode()) {
-                    if (binaryReadTool.readBool()) {
-                        // Move to the right subnode.
-                        huffmanNode = huffmanNode.getRightNode();
-                    } else {
-                        // Move to the left subnode.
-                        huffmanNode = huffmanNode.getLeftNode();
-                    }
+            profiler.start(ProfilerPhases.TREE_BUILD);
+
+            HuffmanCanonicalCodes canonicalCodes = HuffmanCanonicalCodes.read(binaryReadTool);
+
+            if (canonicalCodes.getCharacterCount() == 1) {
+
+                profiler.start(ProfilerPhases.DECODE);
+
+                // There's only one character in the data, and it has no bits of
+                // its own in the compressed file. Simply repeat it.
+                int character = canonicalCodes.getFirstCharacter();
+
+                for (long i = 0; i < dataLength; i++) {
+                    binaryWriteTool.write(character);
                 }
 
-                binaryWriteTool.write(huffmanNode.getValue());
+            } else {
+
+                HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(
+                        canonicalCodes.getLengths(), canonicalCodes.getCodes());
+
+                profiler.start(ProfilerPhases.DECODE);
 
+                // Now that we have the table, we can start decompressing the
+                // data and writing the characters to output as we go.
+                for (long i = 0; i < dataLength; i++) {
+                    binaryWriteTool.write(decodeTable.decode(binaryReadTool));
+                }
             }
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
+        profiler.start(ProfilerPhases.IO);
+
         try {
             binaryWriteTool.flushAndClose();
             binaryReadTool.close();
@@ -297,146 +694,398 @@ public class Huffman implements CompressAlgorithm {
             return false;
         }
 
+        profiler.stop();
+
         // At this point, everything went well and we can return
         // a true boolean value to mark the success.
         return true;
     }
 
     /**
-     * This recursive method reads binary data from the input file and constructs a
-     * Huffman tree based on it. First bit tells if it's a leaf node or not, then
-     * we'll read additional data such as the character itself.
+     * Compresses the input file in the adaptive mode. The data is read only once, and
+     * the codes are updated after each character, so no code lengths are stored.
      *
-     * @return The fully constructed Huffman tree.
-     * @throws IOException If there's an error reading or constructing the tree.
+     * @return True if the operation succeeded, false otherwise.
      */
-    private HuffmanNode readTreeFromFile() throws IOException {
+    private boolean compressAdaptive() {
 
-        // The first bit tells if this is a leaf or not.
-        boolean leafNode = binaryReadTool.readBool();
+        AdaptiveHuffmanTree adaptiveHuffmanTree = new AdaptiveHuffmanTree();
 
-        if (leafNode) {
-            char character = binaryReadTool.readChar();
-            return new HuffmanNode(character, null);
-        } else {
-            return new HuffmanNode(null, null, readTreeFromFile(), readTreeFromFile());
+        profiler.start(ProfilerPhases.IO);
+
+        try {
+            // Write an integer to indicate that this file is adaptive Huffman coded.
+            binaryWriteTool.writeInt(Main.HUFFMAN_ADAPTIVE_CODE);
+
+            // The length is only informative here, as the data ends with a special character.
+            binaryWriteTool.writeLong(source.length());
+
+            profiler.start(ProfilerPhases.ENCODE);
+
+            while (binaryReadTool.streamHasData()) {
+                adaptiveHuffmanTree.encode(binaryReadTool.readChar(), binaryWriteTool);
+            }
+
+            adaptiveHuffmanTree.encode(AdaptiveHuffmanTree.END_OF_DATA, binaryWriteTool);
+
+            profiler.start(ProfilerPhases.IO);
+
+            // Write the bits to the file and close the stream. It cannot be reused.
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
         }
+
+        profiler.stop();
+
+        return true;
     }
 
     /**
-     * This method constructs the Huffman tree structure. It'll return
-     * the root node once the tree has been built.
+     * Decompresses a file that was compressed in the adaptive mode. The identification
+     * code has already been read.
      *
-     * @param weights An array of integers representing each character's weights.
-     * @return The root node of the newly created Huffman tree.
+     * @return True if the operation succeeded, false otherwise.
      */
-    private HuffmanNode buildTree(int[] weights) {
+    private boolean decompressAdaptive() {
 
-        // This is my own minimum priority queue.
-        MinQueue<HuffmanNode> nodes = new MinQueue<>();
+        AdaptiveHuffmanTree adaptiveHuffmanTree = new AdaptiveHuffmanTree();
 
-        // Loop through the alphabet (default size is 256).
-        for (char index = 0; index < Main.ALPHABET_SIZE; index++) {
+        try {
+            // The data ends with a special character, so the length is only
+            // used to make the output file big enough right away.
+            preallocate(binaryReadTool.readLong());
 
-            int currentWeight = weights[index];
+            profiler.start(ProfilerPhases.DECODE);
 
-            if (currentWeight > 0) {
-                // A character of this code (index from 0) exists (at least one).
-                HuffmanNode huffmanNode = new HuffmanNode(index, currentWeight);
+            int character = adaptiveHuffmanTree.decode(binaryReadTool);
 
-                nodes.offer(huffmanNode);
+            while (character != AdaptiveHuffmanTree.END_OF_DATA) {
+                binaryWriteTool.write(character);
+                character = adaptiveHuffmanTree.decode(binaryReadTool);
             }
+
+            profiler.start(ProfilerPhases.IO);
+
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
         }
 
-        // Repeatedly combines two trees of the smallest size together, until
-        // only one tree is left.
-        while (nodes.getSize() > 1) {
+        profiler.stop();
+
+        return true;
+    }
+
+    /**
+     * Compresses the input file in the block mode. The blocks are read one after another,
+     * and handed over to a fork/join pool to be coded. The coded blocks are written in
+     * their original order.
+     * <p>
+     * Each block is written as its original length, its compressed length and the
+     * compressed block itself. A length of zero marks the end of the blocks.
+     * <p>
+     * Also used by the interleaved mode, where each block is split into several streams.
+     *
+     * @param interleaved True to split each block into several streams.
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean compressBlocks(boolean interleaved) {
+
+        HuffmanBlockCoder huffmanBlockCoder = new HuffmanBlockCoder(maxCodeLength, interleaved);
+
+        ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+        // Only a few blocks per thread are kept in memory at once.
+        int maxPendingBlocks = forkJoinPool.getParallelism() * 2;
+
+        Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+        Queue<Integer> pendingLengths = new ArrayDeque<>();
+
+        profiler.start(ProfilerPhases.IO);
+
+        try {
+            // Write an integer to indicate that this file is Huffman coded in blocks.
+            if (interleaved) {
+                binaryWriteTool.writeInt(Main.HUFFMAN_INTERLEAVED_CODE);
+            } else {
+                binaryWriteTool.writeInt(Main.HUFFMAN_BLOCK_CODE);
+            }
+
+            // The length is only informative here, as each block has its own length.
+            binaryWriteTool.writeLong(source.length());
+
+            // Reading the blocks and writing the coded ones is counted in, as it
+            // happens while the blocks are being coded.
+            profiler.start(ProfilerPhases.ENCODE);
+
+            while (binaryReadTool.streamHasData()) {
+
+                byte[] block = new byte[blockSize];
+                int length = binaryReadTool.readBytes(block, blockSize);
+
+                pendingBlocks.add(forkJoinPool.submit(() -> huffmanBlockCoder.encode(block, length)));
+                pendingLengths.add(length);
 
-            // The ordering here is important! Do not swap the right node
-            // in front of the left node.
-            HuffmanNode leftNode = nodes.poll(); // Has a binary code of 0.
-            HuffmanNode rightNode = nodes.poll(); // Has a binary code of 1.
+                profiler.count(ProfilerCounters.BLOCKS, 1);
 
-            // These are separated for easier debugging.
-            int leftNodeWeight = leftNode.getWeight();
-            int rightNodeWeight = rightNode.getWeight();
+                if (pendingBlocks.size() >= maxPendingBlocks) {
+                    writeBlock(pendingLengths.poll(), pendingBlocks.poll().get());
+                }
+            }
+
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingLengths.poll(), pendingBlocks.poll().get());
+            }
+
+            if (maxCodeLength > 0) {
+                setLengthLimitCost(huffmanBlockCoder.getLengthLimitCost());
+            }
 
-            int combinedNodeWeight = leftNodeWeight + rightNodeWeight;
+            profiler.start(ProfilerPhases.IO);
 
-            HuffmanNode newNode = new HuffmanNode(null, combinedNodeWeight, leftNode, rightNode);
+            // No more blocks.
+            binaryWriteTool.writeInt(0);
 
-            // The newly created tree ("node"), which has combined the two previous trees
-            // is added to the queue.
-            nodes.offer(newNode);
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException | InterruptedException | ExecutionException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
         }
 
-        // We only have 1 node left, which is the root node.
-        return nodes.poll();
+        profiler.stop();
+
+        return true;
     }
 
     /**
-     * This is a recursive function which builds a table (array of Strings) that indicates what
-     * character is represented by what binary sequence (as a String).
-     * <p>
-     * Here's an example entry of the output:
-     * <p>
-     * 65 = 1010 (ASCII code for the character 'A' is 65)
-     * 66 = 101111 (ASCII code the the character 'B' is 66)
-     * <p>
-     * We'll using the character's code (ASCII or UTF-8 or otherwise) to indicate the position
-     * (index) in the table. Then at that position, a String value is stored. This String value
-     * represents the binary sequence of 0's and 1's which is used by Huffman coding.
+     * Writes a single compressed block into the output file.
      *
-     * @param stringArray The array of Strings we'll build up as the table.
-     * @param huffmanNode The root node we'll start building the table from.
-     * @param current     Holds the binary value we'll build for each character.
+     * @param length         How many bytes the block held before it was compressed.
+     * @param compressedData The compressed block.
+     * @throws IOException If we can't write to the stream.
      */
-    private void buildTable(String[] stringArray, HuffmanNode huffmanNode, String current) {
-        if (huffmanNode.isLeafNode()) {
-            // We are at a leaf node, so we have the binary sequence for that
-            // character. We'll add it to the array of Strings. For an example, character
-            // 'A' at position 65 of the array of Strings might get "1010" as
-            // the string representation of the actual binary sequence.
-            stringArray[huffmanNode.getValue()] = current;
-        } else {
-            // We'll recursively traverse the tree in order to build the table structure.
-            // It's important to be uniform about whether the right or the left child node
-            // will get a 0 or a 1 in binary.
-            buildTable(stringArray, huffmanNode.getLeftNode(), current + Main.LEFT_TREE_BINARY_VALUE);
-            buildTable(stringArray, huffmanNode.getRightNode(), current + Main.RIGHT_TREE_BINARY_VALUE);
+    private void writeBlock(int length, byte[] compressedData) throws IOException {
+        binaryWriteTool.writeInt(length);
+        binaryWriteTool.writeInt(compressedData.length);
+        binaryWriteTool.writeBytes(compressedData, 0, compressedData.length);
+    }
+
+    /**
+     * Decompresses a file that was compressed in the block mode. The identification
+     * code has already been read. Just like when compressing, the blocks are decoded
+     * in parallel and written in their original order.
+     *
+     * @param interleaved True if each block has been split into several streams.
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean decompressBlocks(boolean interleaved) {
+
+        HuffmanBlockCoder huffmanBlockCoder = new HuffmanBlockCoder(0, interleaved);
+
+        ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+        int maxPendingBlocks = forkJoinPool.getParallelism() * 2;
+
+        Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+        try {
+            // Each block has its own length, so the length is only used
+            // to make the output file big enough right away.
+            preallocate(binaryReadTool.readLong());
+
+            profiler.start(ProfilerPhases.DECODE);
+
+            int length = binaryReadTool.readInt();
+
+            while (length != 0) {
+
+                int compressedLength = binaryReadTool.readInt();
+
+                if (length < 0 || compressedLength < 0) {
+                    throw new IOException("Corrupted file.");
+                }
+
+                byte[] compressedData = new byte[compressedLength];
+
+                if (binaryReadTool.readBytes(compressedData, compressedLength) != compressedLength) {
+                    throw new IOException("Corrupted file.");
+                }
+
+                int blockLength = length;
+
+                pendingBlocks.add(forkJoinPool.submit(() -> huffmanBlockCoder.decode(compressedData, blockLength)));
+
+                profiler.count(ProfilerCounters.BLOCKS, 1);
+
+                if (pendingBlocks.size() >= maxPendingBlocks) {
+                    byte[] block = pendingBlocks.poll().get();
+                    binaryWriteTool.writeBytes(block, 0, block.length);
+                }
+
+                length = binaryReadTool.readInt();
+            }
+
+            while (!pendingBlocks.isEmpty()) {
+                byte[] block = pendingBlocks.poll().get();
+                binaryWriteTool.writeBytes(block, 0, block.length);
+            }
+
+            profiler.start(ProfilerPhases.IO);
+
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException | InterruptedException | ExecutionException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
         }
+
+        profiler.stop();
+
+        return true;
     }
 
     /**
-     * This recursive method builds a binary representation of the
-     * Huffman tree and writes it at the beginning of the output file.
+     * Compresses the input file in the order-1 mode. Just like in the static mode, the
+     * data is read twice: first to count how often each character follows each other
+     * character, and then to write the codes.
      *
-     * @param rootHuffmanNode The root node from which traversal will begin.
+     * @return True if the operation succeeded, false otherwise.
      */
-    private void writeTree(HuffmanNode rootHuffmanNode) throws IOException {
+    private boolean compressOrder1() {
 
-        if (rootHuffmanNode.isLeafNode()) {
-            // We reached a leaf, meaning it has no child nodes.
+        long dataLength = 0;
 
-            char character = rootHuffmanNode.getValue();
-            int charCode = (int) character; // For debugging.
+        // The weights of each character, separately for each previous character.
+        long[][] weights = new long[Main.ALPHABET_SIZE][Main.ALPHABET_SIZE];
 
-            // Writes a '1'.
-            binaryWriteTool.writeOneBit();
+        profiler.start(ProfilerPhases.IO);
 
-            // Writes the current character's code.
-            binaryWriteTool.write(charCode);
+        try {
+            // Write an integer to indicate that this file is order-1 Huffman coded.
+            binaryWriteTool.writeInt(Main.HUFFMAN_ORDER1_CODE);
 
-        } else {
-            // Writes a '0'.
-            binaryWriteTool.writeZeroBit();
+            // The first character has no previous character, so it uses the context 0.
+            int context = 0;
+
+            profiler.start(ProfilerPhases.HISTOGRAM);
+
+            while (binaryReadTool.streamHasData()) {
+                char character = binaryReadTool.readChar();
+                weights[context][character]++;
+                context = character;
+                dataLength++;
+            }
+
+            binaryWriteTool.writeLong(dataLength);
+
+            profiler.start(ProfilerPhases.TREE_BUILD);
+
+            HuffmanContextModel huffmanContextModel = HuffmanContextModel.fromWeights(
+                    weights, Main.HUFFMAN_CONTEXT_TABLES, maxCodeLength);
+
+            // Just like in the static mode, the model is compared to one without the limit.
+            if (maxCodeLength > 0) {
+
+                long unlimitedBits = HuffmanContextModel.fromWeights(weights, Main.HUFFMAN_CONTEXT_TABLES, 0)
+                        .countCodedBits(weights);
+
+                setLengthLimitCost(HuffmanCanonicalCodes.getLengthLimitCost(
+                        huffmanContextModel.countCodedBits(weights), unlimitedBits));
+            }
+
+            binaryReadTool.reset();
 
-            // Recursively traverse the tree, always starting from the
-            // left child node of the current node.
-            writeTree(rootHuffmanNode.getLeftNode());
-            writeTree(rootHuffmanNode.getRightNode());
+            // Just like in the static mode, data that wouldn't get any smaller is stored as it is.
+            if (huffmanContextModel.estimateSize(weights) >= dataLength) {
+                return compressStored(dataLength);
+            }
+
+            profiler.start(ProfilerPhases.IO);
+
+            binaryWriteTool.write(HuffmanBlockCoder.CODED);
+
+            huffmanContextModel.write(binaryWriteTool);
+
+            profiler.start(ProfilerPhases.ENCODE);
+
+            context = 0;
+
+            for (long index = 0; index < dataLength; index++) {
+                char character = binaryReadTool.readChar();
+                huffmanContextModel.encode(context, character, binaryWriteTool);
+                context = character;
+            }
+
+            profiler.start(ProfilerPhases.IO);
+
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
         }
+
+        profiler.stop();
+
+        return true;
     }
 
-}
+    /**
+     * Decompresses a file that was compressed in the order-1 mode. The identification
+     * code has already been read.
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean decompressOrder1() {
+
+        try {
+            long dataLength = binaryReadTool.readLong();
 
+            preallocate(dataLength);
+
+            if (binaryReadTool.readChar() == HuffmanBlockCoder.STORED) {
+
+                copyData(dataLength);
+
+                binaryWriteTool.flushAndClose();
+                binaryReadTool.close();
+
+                profiler.stop();
+
+                return true;
+            }
+
+            profiler.start(ProfilerPhases.TREE_BUILD);
+
+            HuffmanContextModel huffmanContextModel = HuffmanContextModel.read(binaryReadTool);
+
+            profiler.start(ProfilerPhases.DECODE);
+
+            int context = 0;
+
+            for (long index = 0; index < dataLength; index++) {
+                context = huffmanContextModel.decode(context, binaryReadTool);
+                binaryWriteTool.write(context);
+            }
+
+            profiler.start(ProfilerPhases.IO);
+
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
+        }
+
+        profiler.stop();
+
+        return true;
+    }
+
+}
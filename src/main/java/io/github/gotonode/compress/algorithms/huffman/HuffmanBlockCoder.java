@@ -0,0 +1,357 @@
+package io.github.gotonode.compress.algorithms.huffman;
+
+import io.github.gotonode.compress.algorithms.BlockCoder;
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.io.BinaryWriteTool;
+import io.github.gotonode.compress.main.Main;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Codes a single block of data with Huffman coding, in memory. Used by the block mode
+ * of {@link Huffman}, where each block is coded on its own (and in parallel with the
+ * other blocks).
+ * <p>
+ * Each block gets its own weights and its own code lengths, so the codes follow the
+ * data more closely when different parts of a file look different. A coded block
+ * starts with its code lengths, followed by the codes of its characters.
+ * <p>
+ * In the interleaved format, the characters of a block are dealt out into 4 separate
+ * streams (the first character into the first stream, the second into the second
+ * and so on) that share the same codes. The decoder can then decode 4 characters
+ * that don't depend on each other at the same time, as it doesn't need to know where
+ * a code ends before starting on the next one. The block starts with the sizes of the
+ * first 3 streams (in bytes), so that the decoder can jump to the start of each stream.
+ * The code lengths are at the start of the first stream.
+ * <p>
+ * Each compressed block starts with a byte that tells whether it has been coded at all.
+ * If the coded block wouldn't be any smaller than the block itself (as is the case
+ * with already compressed data), the block is stored as it is.
+ * <p>
+ * Apart from the totals used by {@link #getLengthLimitCost()}, this class holds no state
+ * between blocks, so one instance can be shared by all threads.
+ */
+class HuffmanBlockCoder implements BlockCoder {
+
+    // Tells whether data has been Huffman coded, or stored as it is. Also used by Huffman
+    // for the whole data in the static and order-1 modes.
+    static final int CODED = 0;
+    static final int STORED = 1;
+
+    // How many streams an interleaved block is split into.
+    private static final int STREAM_COUNT = 4;
+
+    // The sizes of all but the last stream are stored, each as a 32-bit integer.
+    private static final int JUMP_HEADER_SIZE = (STREAM_COUNT - 1) * Integer.BYTES;
+
+    // The longest allowed code length. Zero means no limit.
+    private final int maxCodeLength;
+
+    // Whether the blocks are split into several streams.
+    private final boolean interleaved;
+
+    // The coded sizes of all of the blocks so far (in bits), with and without the limit.
+    // Only counted when there is a limit.
+    private final LongAdder limitedBits = new LongAdder();
+    private final LongAdder unlimitedBits = new LongAdder();
+
+    /**
+     * Creates a new block coder.
+     *
+     * @param maxCodeLength The longest allowed code length, or 0 for no limit.
+     * @param interleaved   True to use the interleaved format, false for a single stream.
+     */
+    HuffmanBlockCoder(int maxCodeLength, boolean interleaved) {
+        this.maxCodeLength = maxCodeLength;
+        this.interleaved = interleaved;
+    }
+
+    @Override
+    public byte[] encode(byte[] data, int length) throws IOException {
+
+        long[] weights = new long[Main.ALPHABET_SIZE];
+
+        for (int i = 0; i < length; i++) {
+            weights[data[i] & 0xff]++;
+        }
+
+        HuffmanCanonicalCodes canonicalCodes = HuffmanCanonicalCodes.fromWeights(weights, maxCodeLength);
+
+        if (maxCodeLength > 0) {
+            limitedBits.add(canonicalCodes.countCodedBits(weights));
+            unlimitedBits.add(HuffmanCanonicalCodes.fromWeights(weights, 0).countCodedBits(weights));
+        }
+
+        long estimatedSize = canonicalCodes.estimateSize(weights);
+
+        // The interleaved format also needs the jump header, and each stream may end in a byte
+        // that is only partly used. For small blocks this can be more than the coding saves.
+        if (interleaved) {
+            estimatedSize += JUMP_HEADER_SIZE + STREAM_COUNT - 1;
+        }
+
+        // No need to code the block if it wouldn't get any smaller.
+        if (estimatedSize >= length) {
+
+            byte[] output = new byte[length + 1];
+
+            output[0] = STORED;
+            System.arraycopy(data, 0, output, 1, length);
+
+            return output;
+        }
+
+        if (interleaved) {
+            return encodeInterleaved(data, length, canonicalCodes);
+        }
+
+        long[] codes = canonicalCodes.getCodes();
+        int[] writtenLengths = canonicalCodes.getWrittenLengths();
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(length / 2);
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(byteArrayOutputStream);
+
+        binaryWriteTool.write(CODED);
+
+        canonicalCodes.write(binaryWriteTool);
+
+        for (int i = 0; i < length; i++) {
+            int character = data[i] & 0xff;
+            binaryWriteTool.writeBits(codes[character], writtenLengths[character]);
+        }
+
+        binaryWriteTool.flushAndClose();
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Tells how much compression was lost due to the code length limit, over all of the
+     * blocks coded so far together.
+     *
+     * @return The increase in the size of the coded data, as a percentage.
+     */
+    double getLengthLimitCost() {
+        return HuffmanCanonicalCodes.getLengthLimitCost(limitedBits.sum(), unlimitedBits.sum());
+    }
+
+    /**
+     * Compresses a block of data into several streams, and joins them together
+     * behind a header that tells where each stream starts.
+     *
+     * @param data           The data to compress.
+     * @param length         How many bytes of the array belong to the block.
+     * @param canonicalCodes The codes of the block.
+     * @return The compressed block.
+     * @throws IOException If we can't write the compressed block.
+     */
+    private byte[] encodeInterleaved(byte[] data, int length, HuffmanCanonicalCodes canonicalCodes)
+            throws IOException {
+
+        long[] codes = canonicalCodes.getCodes();
+        int[] writtenLengths = canonicalCodes.getWrittenLengths();
+
+        ByteArrayOutputStream[] streams = new ByteArrayOutputStream[STREAM_COUNT];
+        BinaryWriteTool[] binaryWriteTools = new BinaryWriteTool[STREAM_COUNT];
+
+        for (int stream = 0; stream < STREAM_COUNT; stream++) {
+            streams[stream] = new ByteArrayOutputStream(length / (2 * STREAM_COUNT));
+            binaryWriteTools[stream] = new BinaryWriteTool(streams[stream]);
+        }
+
+        canonicalCodes.write(binaryWriteTools[0]);
+
+        for (int i = 0; i < length; i++) {
+            int character = data[i] & 0xff;
+            binaryWriteTools[i % STREAM_COUNT].writeBits(codes[character], writtenLengths[character]);
+        }
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(length / 2);
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(byteArrayOutputStream);
+
+        binaryWriteTool.write(CODED);
+
+        for (int stream = 0; stream < STREAM_COUNT; stream++) {
+            binaryWriteTools[stream].flushAndClose();
+
+            // The jump header, telling how long each stream is (except for the last one).
+            if (stream < STREAM_COUNT - 1) {
+                binaryWriteTool.writeInt(streams[stream].size());
+            }
+        }
+
+        for (ByteArrayOutputStream stream : streams) {
+            byte[] streamData = stream.toByteArray();
+            binaryWriteTool.writeBytes(streamData, 0, streamData.length);
+        }
+
+        binaryWriteTool.flushAndClose();
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] data, int length) throws IOException {
+
+        if (data.length > 0 && data[0] == STORED) {
+
+            // The block was stored as it is.
+            if (data.length != length + 1) {
+                throw new IOException("Corrupted file.");
+            }
+
+            return Arrays.copyOfRange(data, 1, length + 1);
+        }
+
+        if (data.length == 0 || data[0] != CODED) {
+            throw new IOException("Corrupted file.");
+        }
+
+        if (interleaved) {
+            return decodeInterleaved(data, length);
+        }
+
+        byte[] output = new byte[length];
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(new ByteArrayInputStream(data, 1, data.length - 1));
+
+        HuffmanCanonicalCodes canonicalCodes = HuffmanCanonicalCodes.read(binaryReadTool);
+
+        if (canonicalCodes.getCharacterCount() == 1) {
+
+            // There's only one character in the block, and it has no bits of its own.
+            Arrays.fill(output, (byte) canonicalCodes.getFirstCharacter());
+
+        } else {
+
+            HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(
+                    canonicalCodes.getLengths(), canonicalCodes.getCodes());
+
+            for (int i = 0; i < length; i++) {
+                output[i] = (byte) decodeTable.decode(binaryReadTool);
+            }
+        }
+
+        binaryReadTool.close();
+
+        return output;
+    }
+
+    /**
+     * Decompresses a block of data that was split into several streams. Each round
+     * decodes one character from each of the streams.
+     *
+     * @param data   The compressed block.
+     * @param length How many bytes the block held before it was compressed.
+     * @return The decompressed data.
+     * @throws IOException If the block is corrupted.
+     */
+    private byte[] decodeInterleaved(byte[] data, int length) throws IOException {
+
+        byte[] output = new byte[length];
+
+        BinaryReadTool[] binaryReadTools = openStreams(data);
+
+        HuffmanCanonicalCodes canonicalCodes = HuffmanCanonicalCodes.read(binaryReadTools[0]);
+
+        if (canonicalCodes.getCharacterCount() == 1) {
+
+            // There's only one character in the block, and it has no bits of its own.
+            Arrays.fill(output, (byte) canonicalCodes.getFirstCharacter());
+            return output;
+        }
+
+        HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(
+                canonicalCodes.getLengths(), canonicalCodes.getCodes());
+
+        BinaryReadTool first = binaryReadTools[0];
+        BinaryReadTool second = binaryReadTools[1];
+        BinaryReadTool third = binaryReadTools[2];
+        BinaryReadTool fourth = binaryReadTools[3];
+
+        int fullRounds = length - (length % STREAM_COUNT);
+
+        int index = 0;
+
+        // The 4 decodes of a round don't depend on each other.
+        while (index < fullRounds) {
+            output[index] = (byte) decodeTable.decode(first);
+            output[index + 1] = (byte) decodeTable.decode(second);
+            output[index + 2] = (byte) decodeTable.decode(third);
+            output[index + 3] = (byte) decodeTable.decode(fourth);
+            index += STREAM_COUNT;
+        }
+
+        // The last characters, if the length isn't divisible by the number of streams.
+        while (index < length) {
+            output[index] = (byte) decodeTable.decode(binaryReadTools[index % STREAM_COUNT]);
+            index++;
+        }
+
+        return output;
+    }
+
+    /**
+     * Reads the jump header of an interleaved block, and opens a reader for each stream.
+     *
+     * @param data The compressed block, starting with the byte telling that it's coded.
+     * @return The readers, one for each stream.
+     * @throws IOException If the header is corrupted.
+     */
+    private static BinaryReadTool[] openStreams(byte[] data) throws IOException {
+
+        if (data.length < 1 + JUMP_HEADER_SIZE) {
+            throw new IOException("Corrupted file.");
+        }
+
+        BinaryReadTool[] binaryReadTools = new BinaryReadTool[STREAM_COUNT];
+
+        int offset = 1 + JUMP_HEADER_SIZE;
+
+        for (int stream = 0; stream < STREAM_COUNT; stream++) {
+
+            int size;
+
+            if (stream < STREAM_COUNT - 1) {
+                size = readInt(data, 1 + stream * Integer.BYTES);
+            } else {
+                // The last stream takes up the rest of the block.
+                size = data.length - offset;
+            }
+
+            if (size < 0 || size > data.length - offset) {
+                throw new IOException("Corrupted file.");
+            }
+
+            binaryReadTools[stream] = new BinaryReadTool(new ByteArrayInputStream(data, offset, size));
+
+            offset += size;
+        }
+
+        return binaryReadTools;
+    }
+
+    /**
+     * Reads a 32-bit integer from the array, highest byte first.
+     *
+     * @param data   The array to read from.
+     * @param offset Where the integer starts.
+     * @return The integer.
+     */
+    private static int readInt(byte[] data, int offset) {
+
+        int output = 0;
+
+        for (int i = 0; i < Integer.BYTES; i++) {
+            output = (output << Main.BITS_IN_A_BYTE) | (data[offset + i] & 0xff);
+        }
+
+        return output;
+    }
+}
@@ -0,0 +1,461 @@
+package io.github.gotonode.compress.algorithms.huffman;
+
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.io.BinaryWriteTool;
+import io.github.gotonode.compress.main.Main;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Holds canonical Huffman codes. With canonical codes, only the code length of each
+ * character needs to be known. The codes themselves are assigned in a fixed order:
+ * shorter codes come first, and codes of the same length are given in the order of
+ * the characters.
+ * <p>
+ * This is why only the code lengths are written into the compressed file, and both
+ * the compressor and the decompressor build the exact same codes from them.
+ * <p>
+ * For an example, lengths A=2, B=1, C=3 and D=3 give the codes B=0, A=10, C=110 and D=111.
+ * <p>
+ * Sources:
+ * • <a href="https://en.wikipedia.org/wiki/Canonical_Huffman_code">Canonical Huffman code</a> (Wikipedia)
+ */
+class HuffmanCanonicalCodes {
+
+    // Codes are stored in a long, so they can't be any longer than this.
+    private static final int MAX_CODE_LENGTH = Long.SIZE - 1;
+
+    // The code length of each character. A length of 0 means that the character isn't used.
+    private final int[] lengths;
+
+    // The code of each character, stored as the lowest bits.
+    private final long[] codes;
+
+    /**
+     * Assigns the canonical codes for the given code lengths.
+     *
+     * @param lengths The code length of each character (0 if the character isn't used).
+     */
+    HuffmanCanonicalCodes(int[] lengths) {
+
+        this.lengths = lengths;
+        this.codes = new long[lengths.length];
+
+        int maxLength = getMaxLength();
+
+        // How many codes there are of each length.
+        int[] lengthCounts = new int[maxLength + 1];
+
+        for (int length : lengths) {
+            if (length > 0) {
+                lengthCounts[length]++;
+            }
+        }
+
+        // The first code of each length. Each length continues from where the
+        // previous length ended, with one more bit added to the end.
+        long[] nextCodes = new long[maxLength + 1];
+
+        long code = 0;
+
+        for (int length = 1; length <= maxLength; length++) {
+            code = (code + lengthCounts[length - 1]) << 1;
+            nextCodes[length] = code;
+        }
+
+        for (int character = 0; character < lengths.length; character++) {
+            int length = lengths[character];
+
+            if (length > 0) {
+                codes[character] = nextCodes[length]++;
+            }
+        }
+    }
+
+    /**
+     * Builds the Huffman tree from the weights, and assigns the canonical codes based on
+     * the depth of each character in the tree.
+     *
+     * @param weights       An array of longs representing each character's weights.
+     * @param maxCodeLength The longest allowed code length, or 0 for no limit.
+     * @return The codes.
+     */
+    static HuffmanCanonicalCodes fromWeights(long[] weights, int maxCodeLength) {
+
+        int[] lengths = buildLengths(weights);
+
+        if (Main.DEBUG) {
+            System.out.println("Huffman code lengths:");
+            System.out.println(Arrays.toString(lengths));
+        }
+
+        // If some codes got longer than allowed, find the best lengths within the limit instead.
+        if (maxCodeLength > 0 && Arrays.stream(lengths).max().getAsInt() > maxCodeLength) {
+            lengths = HuffmanLengthLimiter.limit(weights, maxCodeLength);
+        }
+
+        return new HuffmanCanonicalCodes(lengths);
+    }
+
+    /**
+     * Builds the Huffman tree and finds the depth of each character in it. The depth
+     * is the length of the character's code.
+     * <p>
+     * The tree is kept in flat arrays instead of node objects. The characters are sorted
+     * by their weights and form the first nodes, and the combined nodes follow them in
+     * the order they're created. As each combined node is at least as heavy as the one
+     * before it, the two lightest nodes are always found at the front of either the
+     * characters or the combined nodes, and no priority queue is needed.
+     *
+     * @param weights An array of longs representing each character's weights.
+     * @return The code length of each character (0 for characters with no weight).
+     */
+    private static int[] buildLengths(long[] weights) {
+
+        int[] lengths = new int[Main.ALPHABET_SIZE];
+
+        // The used characters, lightest first.
+        int[] characters = sortByWeight(weights);
+
+        int count = characters.length;
+
+        if (count == 1) {
+            // If the whole tree is just one leaf, the character still needs
+            // a code of one bit, so that it can be found from the table.
+            lengths[characters[0]] = 1;
+        }
+
+        if (count <= 1) {
+            return lengths;
+        }
+
+        int nodeCount = 2 * count - 1;
+
+        long[] nodeWeights = new long[nodeCount];
+        int[] parents = new int[nodeCount];
+
+        for (int i = 0; i < count; i++) {
+            nodeWeights[i] = weights[characters[i]];
+        }
+
+        // The next unused character and the next unused combined node.
+        int nextLeaf = 0;
+        int nextCombined = count;
+
+        // Repeatedly combines the two lightest nodes into a new node, until only
+        // the root node (the last one) is left.
+        for (int node = count; node < nodeCount; node++) {
+            for (int child = 0; child < 2; child++) {
+
+                int lightest;
+
+                if (nextLeaf < count && (nextCombined == node || nodeWeights[nextLeaf] <= nodeWeights[nextCombined])) {
+                    lightest = nextLeaf++;
+                } else {
+                    lightest = nextCombined++;
+                }
+
+                nodeWeights[node] += nodeWeights[lightest];
+                parents[lightest] = node;
+            }
+        }
+
+        // Parents always come after their children, so the depths can be found
+        // by going through the nodes backwards from the root.
+        int[] depths = new int[nodeCount];
+
+        for (int node = nodeCount - 2; node >= 0; node--) {
+            depths[node] = depths[parents[node]] + 1;
+        }
+
+        for (int i = 0; i < count; i++) {
+            lengths[characters[i]] = depths[i];
+        }
+
+        return lengths;
+    }
+
+    /**
+     * Lists the characters that have a weight, lightest first. Characters of equal
+     * weight are in the order of the characters.
+     *
+     * @param weights The weight of each character.
+     * @return The used characters, sorted.
+     */
+    static int[] sortByWeight(long[] weights) {
+
+        int count = 0;
+
+        for (long weight : weights) {
+            if (weight > 0) {
+                count++;
+            }
+        }
+
+        // The weight is in the high bits and the character in the low bits,
+        // so sorting the keys sorts the characters by weight.
+        long[] keys = new long[count];
+
+        count = 0;
+
+        for (int character = 0; character < weights.length; character++) {
+            if (weights[character] > 0) {
+                keys[count++] = (weights[character] << Main.BITS_IN_A_BYTE) | character;
+            }
+        }
+
+        Arrays.sort(keys);
+
+        int[] characters = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            characters[i] = (int) (keys[i] & (Main.ALPHABET_SIZE - 1));
+        }
+
+        return characters;
+    }
+
+    /**
+     * Reads the code lengths from the stream, and assigns the codes based on them.
+     *
+     * @param binaryReadTool The stream to read from.
+     * @return The codes.
+     * @throws IOException If we can't read from the stream, or if the lengths are corrupted.
+     */
+    static HuffmanCanonicalCodes read(BinaryReadTool binaryReadTool) throws IOException {
+
+        // How many bits are used to store each code length.
+        int lengthWidth = binaryReadTool.readChar();
+
+        int[] lengths = new int[Main.ALPHABET_SIZE];
+
+        for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+
+            // The first bit tells whether the character is used at all.
+            if (!binaryReadTool.readBool()) {
+                continue;
+            }
+
+            int length = (int) binaryReadTool.readBits(lengthWidth);
+
+            if (length == 0 || length > MAX_CODE_LENGTH) {
+                throw new IOException("Corrupted file.");
+            }
+
+            lengths[character] = length;
+        }
+
+        if (!isValidLengths(lengths)) {
+            throw new IOException("Corrupted file.");
+        }
+
+        return new HuffmanCanonicalCodes(lengths);
+    }
+
+    /**
+     * Checks that the code lengths make up a proper prefix code (the Kraft inequality). The
+     * codes must not run out, as then some of them would overlap. With two or more characters,
+     * they must also use up all of the codes, like the codes of a Huffman tree always do.
+     * A single character gets a code of its own, which leaves the other half unused.
+     *
+     * @param lengths The code length of each character (0 if the character isn't used).
+     * @return True if the lengths are valid, false otherwise.
+     */
+    private static boolean isValidLengths(int[] lengths) {
+
+        int[] lengthCounts = new int[MAX_CODE_LENGTH + 1];
+        int characterCount = 0;
+
+        for (int length : lengths) {
+            if (length > 0) {
+                lengthCounts[length]++;
+                characterCount++;
+            }
+        }
+
+        // How many codes of the current length are still free. Once there are more than
+        // there are characters, the codes can't be used up anymore, so the count stops there.
+        long freeCodes = 1;
+
+        for (int length = 1; length <= MAX_CODE_LENGTH; length++) {
+
+            freeCodes = freeCodes * 2 - lengthCounts[length];
+
+            if (freeCodes < 0) {
+                return false;
+            }
+
+            freeCodes = Math.min(freeCodes, Main.ALPHABET_SIZE + 1);
+        }
+
+        return characterCount <= 1 || freeCodes == 0;
+    }
+
+    /**
+     * Writes the code lengths into the stream. For each character, a single bit tells
+     * whether it's used, and used characters then have their code length written.
+     *
+     * @param binaryWriteTool The stream to write to.
+     * @throws IOException If we can't write to the stream.
+     */
+    void write(BinaryWriteTool binaryWriteTool) throws IOException {
+
+        int lengthWidth = getLengthWidth();
+
+        binaryWriteTool.write(lengthWidth);
+
+        for (int length : lengths) {
+
+            if (length == 0) {
+                binaryWriteTool.writeZeroBit();
+                continue;
+            }
+
+            binaryWriteTool.writeOneBit();
+            binaryWriteTool.writeBits(length, lengthWidth);
+        }
+    }
+
+    /**
+     * Tells how many bits each character's code takes in the coded data. These are the
+     * same as the code lengths, except when the data only has one distinct character.
+     * That character then doesn't need any bits of its own, as the decompressor simply
+     * repeats it.
+     * <p>
+     * Used together with {@link #getCodes()}, so that each code can be written at once.
+     *
+     * @return The number of bits written for each character (0 for unused characters).
+     */
+    int[] getWrittenLengths() {
+
+        if (getCharacterCount() == 1) {
+            return new int[lengths.length];
+        }
+
+        return lengths;
+    }
+
+    /**
+     * Calculates how many bits the coded data takes with these codes.
+     *
+     * @param weights How many times each character appears in the data.
+     * @return The size of the coded data in bits.
+     */
+    long countCodedBits(long[] weights) {
+
+        long bits = 0;
+
+        for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+            bits += weights[character] * lengths[character];
+        }
+
+        return bits;
+    }
+
+    /**
+     * Calculates how much bigger the coded data got because of the code length limit.
+     *
+     * @param limitedBits   The size of the coded data with the limit, in bits.
+     * @param unlimitedBits The size of the coded data without the limit, in bits.
+     * @return The increase in size as a percentage, or zero if there was none.
+     */
+    static double getLengthLimitCost(long limitedBits, long unlimitedBits) {
+
+        if (limitedBits <= unlimitedBits) {
+            return 0.0d;
+        }
+
+        return ((limitedBits - unlimitedBits) * 100.0d) / unlimitedBits;
+    }
+
+    /**
+     * Estimates how many bytes the code lengths and the coded data take together,
+     * without actually coding anything.
+     *
+     * @param weights How many times each character appears in the data.
+     * @return The estimated size in bytes.
+     */
+    long estimateSize(long[] weights) {
+        return (getHeaderBits() + countCodedBits(weights) + Main.BITS_IN_A_BYTE - 1) / Main.BITS_IN_A_BYTE;
+    }
+
+    /**
+     * Calculates how many bits {@link #write(BinaryWriteTool)} writes.
+     *
+     * @return The size of the code lengths in bits.
+     */
+    long getHeaderBits() {
+        return Main.BITS_IN_A_BYTE + lengths.length + (long) getCharacterCount() * getLengthWidth();
+    }
+
+    /**
+     * Tells how many bits are used to store each code length. Only as many bits
+     * as the longest code length needs are used.
+     *
+     * @return The number of bits.
+     */
+    private int getLengthWidth() {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(getMaxLength());
+    }
+
+    /**
+     * Finds the longest code length.
+     *
+     * @return The longest code length, or 0 if no characters are used.
+     */
+    private int getMaxLength() {
+
+        int maxLength = 0;
+
+        for (int length : lengths) {
+            maxLength = Math.max(maxLength, length);
+        }
+
+        return maxLength;
+    }
+
+    /**
+     * Counts how many characters have a code.
+     *
+     * @return The number of characters used in the data.
+     */
+    int getCharacterCount() {
+
+        int count = 0;
+
+        for (int length : lengths) {
+            if (length > 0) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Finds the first character that has a code. Useful when there's only one.
+     *
+     * @return The character, or -1 if no characters are used.
+     */
+    int getFirstCharacter() {
+
+        for (int character = 0; character < lengths.length; character++) {
+            if (lengths[character] > 0) {
+                return character;
+            }
+        }
+
+        return -1;
+    }
+
+    // Getters are self-explanatory, and do not get their own Javadoc comments.
+
+    int[] getLengths() {
+        return lengths;
+    }
+
+    long[] getCodes() {
+        return codes;
+    }
+}
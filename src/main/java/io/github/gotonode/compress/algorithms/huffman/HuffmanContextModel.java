@@ -0,0 +1,408 @@
+package io.github.gotonode.compress.algorithms.huffman;
+
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.io.BinaryWriteTool;
+import io.github.gotonode.compress.main.Main;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Holds the codes used by the order-1 (context) mode of {@link Huffman}. In that mode,
+ * each character is coded with codes chosen by the character before it (the context).
+ * For an example, in English text a 'q' is almost always followed by a 'u', so the
+ * codes used after a 'q' can give the 'u' a very short code.
+ * <p>
+ * Storing 256 sets of codes would take too much room, so the contexts are grouped
+ * into a few clusters of contexts that are followed by similar characters. Each
+ * cluster then gets one table of codes. The grouping is done a bit like k-means:
+ * the contexts are repeatedly moved to the cluster that codes them in the fewest
+ * bits, and the clusters are then updated to match their contexts.
+ * <p>
+ * The model is stored as the number of tables, then the table of each context, and
+ * then the code lengths of each table.
+ */
+class HuffmanContextModel {
+
+    // How many times the contexts are moved between the clusters.
+    private static final int CLUSTERING_ROUNDS = 6;
+
+    // The table used by each context (the previous character).
+    private final int[] contextTables;
+
+    // The canonical codes of each table.
+    private final HuffmanCanonicalCodes[] tables;
+
+    // The codes and how many bits they take, kept at hand for each table.
+    private final long[][] codes;
+    private final int[][] writtenLengths;
+
+    // The only character of each table that has just one, or -1 for other tables.
+    private final int[] onlyCharacters;
+
+    // Used when decoding, one for each table.
+    private HuffmanDecodeTable[] decodeTables;
+
+    /**
+     * Creates the model from the tables and the table of each context.
+     *
+     * @param contextTables The table used by each context.
+     * @param tables        The codes of each table.
+     */
+    private HuffmanContextModel(int[] contextTables, HuffmanCanonicalCodes[] tables) {
+        this.contextTables = contextTables;
+        this.tables = tables;
+
+        this.codes = new long[tables.length][];
+        this.writtenLengths = new int[tables.length][];
+        this.onlyCharacters = new int[tables.length];
+
+        for (int table = 0; table < tables.length; table++) {
+
+            codes[table] = tables[table].getCodes();
+            writtenLengths[table] = tables[table].getWrittenLengths();
+
+            if (tables[table].getCharacterCount() == 1) {
+                onlyCharacters[table] = tables[table].getFirstCharacter();
+            } else {
+                onlyCharacters[table] = -1;
+            }
+        }
+    }
+
+    /**
+     * Groups the contexts into clusters and builds the codes of each cluster.
+     *
+     * @param weights       How many times each character follows each context,
+     *                      indexed first by the context and then by the character.
+     * @param maxTables     How many tables can be used at most.
+     * @param maxCodeLength The longest allowed code length, or 0 for no limit.
+     * @return The model.
+     */
+    static HuffmanContextModel fromWeights(long[][] weights, int maxTables, int maxCodeLength) {
+
+        int[] contextTables = new int[Main.ALPHABET_SIZE];
+
+        long[][] clusterWeights = cluster(weights, maxTables, contextTables);
+
+        HuffmanCanonicalCodes[] tables = new HuffmanCanonicalCodes[clusterWeights.length];
+
+        for (int table = 0; table < tables.length; table++) {
+            tables[table] = HuffmanCanonicalCodes.fromWeights(clusterWeights[table], maxCodeLength);
+        }
+
+        return new HuffmanContextModel(contextTables, tables);
+    }
+
+    /**
+     * Groups the contexts into at most the given number of clusters.
+     *
+     * @param weights       The weights of each context.
+     * @param maxTables     How many clusters can be used at most.
+     * @param contextTables The cluster of each context is stored here.
+     * @return The combined weights of each cluster. Clusters without any weights are left out.
+     */
+    private static long[][] cluster(long[][] weights, int maxTables, int[] contextTables) {
+
+        long[] totals = new long[Main.ALPHABET_SIZE];
+
+        for (int context = 0; context < Main.ALPHABET_SIZE; context++) {
+            for (long weight : weights[context]) {
+                totals[context] += weight;
+            }
+        }
+
+        // The heaviest contexts are used as the starting points of the clusters.
+        int[] starts = heaviestContexts(totals, maxTables);
+
+        long[][] clusterWeights = new long[starts.length][];
+
+        for (int cluster = 0; cluster < starts.length; cluster++) {
+            clusterWeights[cluster] = weights[starts[cluster]].clone();
+        }
+
+        for (int round = 0; round < CLUSTERING_ROUNDS; round++) {
+
+            double[][] costs = new double[clusterWeights.length][];
+
+            for (int cluster = 0; cluster < clusterWeights.length; cluster++) {
+                costs[cluster] = estimateCosts(clusterWeights[cluster]);
+            }
+
+            // Move each context to the cluster that codes it in the fewest bits.
+            for (int context = 0; context < Main.ALPHABET_SIZE; context++) {
+                contextTables[context] = cheapestCluster(weights[context], costs);
+            }
+
+            clusterWeights = new long[clusterWeights.length][Main.ALPHABET_SIZE];
+
+            for (int context = 0; context < Main.ALPHABET_SIZE; context++) {
+                for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+                    clusterWeights[contextTables[context]][character] += weights[context][character];
+                }
+            }
+        }
+
+        return removeEmptyClusters(clusterWeights, contextTables);
+    }
+
+    /**
+     * Finds the contexts with the most weight. Contexts without any weight are not used.
+     *
+     * @param totals The total weight of each context.
+     * @param count  How many contexts to find at most.
+     * @return The contexts, heaviest first. Has at least one context, even if all are empty.
+     */
+    private static int[] heaviestContexts(long[] totals, int count) {
+
+        long[] keys = new long[Main.ALPHABET_SIZE];
+        int used = 0;
+
+        for (int context = 0; context < Main.ALPHABET_SIZE; context++) {
+            if (totals[context] > 0) {
+                // The weight is in the high bits, so sorting the keys sorts the contexts.
+                keys[used++] = (totals[context] << Main.BITS_IN_A_BYTE) | context;
+            }
+        }
+
+        Arrays.sort(keys, 0, used);
+
+        int[] contexts = new int[Math.max(1, Math.min(count, used))];
+
+        for (int i = 0; i < contexts.length && i < used; i++) {
+            contexts[i] = (int) (keys[used - 1 - i] & (Main.ALPHABET_SIZE - 1));
+        }
+
+        return contexts;
+    }
+
+    /**
+     * Estimates how many bits each character would take with the codes built from
+     * the given weights. Each character is counted once more than it appears, so
+     * that characters that don't appear yet still get a (long) code.
+     *
+     * @param weights The weights of a cluster.
+     * @return The estimated code length of each character, in bits.
+     */
+    private static double[] estimateCosts(long[] weights) {
+
+        double total = Main.ALPHABET_SIZE;
+
+        for (long weight : weights) {
+            total += weight;
+        }
+
+        double[] costs = new double[Main.ALPHABET_SIZE];
+
+        for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+            costs[character] = Math.log(total / (weights[character] + 1)) / Math.log(2);
+        }
+
+        return costs;
+    }
+
+    /**
+     * Finds the cluster that codes the weights of a context in the fewest bits.
+     *
+     * @param weights The weights of the context.
+     * @param costs   The estimated code lengths of each cluster.
+     * @return The cluster.
+     */
+    private static int cheapestCluster(long[] weights, double[][] costs) {
+
+        int cheapest = 0;
+        double cheapestCost = Double.MAX_VALUE;
+
+        for (int cluster = 0; cluster < costs.length; cluster++) {
+
+            double cost = 0;
+
+            for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+                cost += weights[character] * costs[cluster][character];
+            }
+
+            if (cost < cheapestCost) {
+                cheapest = cluster;
+                cheapestCost = cost;
+            }
+        }
+
+        return cheapest;
+    }
+
+    /**
+     * Leaves out the clusters that no context ended up in, and renumbers the rest.
+     *
+     * @param clusterWeights The weights of each cluster.
+     * @param contextTables  The cluster of each context, updated to the new numbers.
+     * @return The weights of the clusters that are left.
+     */
+    private static long[][] removeEmptyClusters(long[][] clusterWeights, int[] contextTables) {
+
+        int[] newNumbers = new int[clusterWeights.length];
+        int count = 0;
+
+        for (int cluster = 0; cluster < clusterWeights.length; cluster++) {
+
+            newNumbers[cluster] = count;
+
+            for (int context = 0; context < Main.ALPHABET_SIZE; context++) {
+                if (contextTables[context] == cluster) {
+                    count++;
+                    break;
+                }
+            }
+        }
+
+        long[][] remaining = new long[count][];
+
+        for (int context = 0; context < Main.ALPHABET_SIZE; context++) {
+            int cluster = contextTables[context];
+            contextTables[context] = newNumbers[cluster];
+            remaining[newNumbers[cluster]] = clusterWeights[cluster];
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Estimates how many bytes the model and the coded data take together,
+     * without actually coding anything.
+     *
+     * @param weights The weights the model was built from.
+     * @return The estimated size in bytes.
+     */
+    long estimateSize(long[][] weights) {
+
+        long bits = Main.BITS_IN_A_BYTE + (long) Main.ALPHABET_SIZE * getTableWidth(tables.length);
+
+        for (HuffmanCanonicalCodes table : tables) {
+            bits += table.getHeaderBits();
+        }
+
+        bits += countCodedBits(weights);
+
+        return (bits + Main.BITS_IN_A_BYTE - 1) / Main.BITS_IN_A_BYTE;
+    }
+
+    /**
+     * Calculates how many bits the coded data takes with this model.
+     *
+     * @param weights The weights the model was built from.
+     * @return The size of the coded data in bits.
+     */
+    long countCodedBits(long[][] weights) {
+
+        long bits = 0;
+
+        for (int context = 0; context < Main.ALPHABET_SIZE; context++) {
+            bits += tables[contextTables[context]].countCodedBits(weights[context]);
+        }
+
+        return bits;
+    }
+
+    /**
+     * Reads the model from the stream.
+     *
+     * @param binaryReadTool The stream to read from.
+     * @return The model, ready for decoding.
+     * @throws IOException If we can't read from the stream, or if the model is corrupted.
+     */
+    static HuffmanContextModel read(BinaryReadTool binaryReadTool) throws IOException {
+
+        int tableCount = binaryReadTool.readChar() + 1;
+        int tableWidth = getTableWidth(tableCount);
+
+        int[] contextTables = new int[Main.ALPHABET_SIZE];
+
+        for (int context = 0; context < Main.ALPHABET_SIZE; context++) {
+
+            contextTables[context] = (int) binaryReadTool.readBits(tableWidth);
+
+            if (contextTables[context] >= tableCount) {
+                throw new IOException("Corrupted file.");
+            }
+        }
+
+        HuffmanCanonicalCodes[] tables = new HuffmanCanonicalCodes[tableCount];
+        HuffmanDecodeTable[] decodeTables = new HuffmanDecodeTable[tableCount];
+
+        for (int table = 0; table < tableCount; table++) {
+            tables[table] = HuffmanCanonicalCodes.read(binaryReadTool);
+            decodeTables[table] = new HuffmanDecodeTable(tables[table].getLengths(), tables[table].getCodes());
+        }
+
+        HuffmanContextModel huffmanContextModel = new HuffmanContextModel(contextTables, tables);
+        huffmanContextModel.decodeTables = decodeTables;
+
+        return huffmanContextModel;
+    }
+
+    /**
+     * Writes the model into the stream.
+     *
+     * @param binaryWriteTool The stream to write to.
+     * @throws IOException If we can't write to the stream.
+     */
+    void write(BinaryWriteTool binaryWriteTool) throws IOException {
+
+        // There's always at least one table, so the count is stored minus one.
+        binaryWriteTool.write(tables.length - 1);
+
+        int tableWidth = getTableWidth(tables.length);
+
+        for (int contextTable : contextTables) {
+            binaryWriteTool.writeBits(contextTable, tableWidth);
+        }
+
+        for (HuffmanCanonicalCodes table : tables) {
+            table.write(binaryWriteTool);
+        }
+    }
+
+    /**
+     * Writes the code of the character, using the table chosen by the previous character.
+     *
+     * @param context         The previous character.
+     * @param character       The character to write.
+     * @param binaryWriteTool The stream to write to.
+     * @throws IOException If we can't write to the stream.
+     */
+    void encode(int context, int character, BinaryWriteTool binaryWriteTool) throws IOException {
+
+        int table = contextTables[context];
+
+        binaryWriteTool.writeBits(codes[table][character], writtenLengths[table][character]);
+    }
+
+    /**
+     * Reads the next character, using the table chosen by the previous character.
+     *
+     * @param context        The previous character.
+     * @param binaryReadTool The stream to read from.
+     * @return The character.
+     * @throws IOException If we can't read from the stream, or if the file is corrupted.
+     */
+    int decode(int context, BinaryReadTool binaryReadTool) throws IOException {
+
+        int table = contextTables[context];
+
+        // A table with only one character doesn't need any bits.
+        if (onlyCharacters[table] != -1) {
+            return onlyCharacters[table];
+        }
+
+        return decodeTables[table].decode(binaryReadTool);
+    }
+
+    /**
+     * Tells how many bits are needed to store the number of a table.
+     *
+     * @param tableCount How many tables there are.
+     * @return The number of bits.
+     */
+    private static int getTableWidth(int tableCount) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(tableCount - 1);
+    }
+}
@@ -0,0 +1,223 @@
+package io.github.gotonode.compress.algorithms.huffman;
+
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.main.Main;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This is a lookup table used to decode Huffman coded data several bits at a time,
+ * instead of walking the Huffman tree one bit at a time.
+ * <p>
+ * The decoder peeks at the next bits of the stream and uses them as an index into
+ * the table. The entry found there tells which character it is and how many bits
+ * its code actually took, so that only those bits are consumed.
+ * <p>
+ * Codes that are longer than the root table's index continue in a sub-table. The
+ * root table entry then points to the sub-table, which is indexed by the bits that
+ * follow. Sub-tables can point to further sub-tables, so there is no upper limit
+ * for the code length.
+ */
+class HuffmanDecodeTable {
+
+    // Set on entries that hold a character. Other non-zero entries point to a sub-table.
+    private static final int LEAF_FLAG = 1 << 30;
+
+    // The lowest bits of an entry hold either the code length or the sub-table's index width.
+    private static final int ENTRY_SHIFT = 8;
+    private static final int ENTRY_MASK = 0xff;
+
+    // Bits used to mark a character in the sorting keys used while building.
+    private static final int KEY_SHIFT = 16;
+    private static final int KEY_MASK = 0xffff;
+
+    // Code lengths and codes for each character, as given to the constructor.
+    private final int[] lengths;
+    private final long[] codes;
+
+    // All of the tables, the root table first followed by the sub-tables.
+    private int[] entries;
+    private int size;
+
+    // How many bits are used to index the root table.
+    private final int rootBits;
+
+    /**
+     * Builds the lookup table from the codes of each character.
+     *
+     * @param lengths The code length of each character. Characters with a length of
+     *                0 do not appear in the data.
+     * @param codes   The code of each character. The code's bits are the lowest bits.
+     */
+    HuffmanDecodeTable(int[] lengths, long[] codes) {
+        this.lengths = lengths;
+        this.codes = codes;
+
+        int maxLength = 0;
+        int count = 0;
+
+        for (int length : lengths) {
+            if (length > 0) {
+                maxLength = Math.max(maxLength, length);
+                count++;
+            }
+        }
+
+        int[] characters = new int[count];
+
+        count = 0;
+
+        for (int character = 0; character < lengths.length; character++) {
+            if (lengths[character] > 0) {
+                characters[count++] = character;
+            }
+        }
+
+        this.rootBits = Math.max(1, Math.min(Main.HUFFMAN_TABLE_BITS, maxLength));
+
+        this.entries = new int[1 << rootBits];
+        this.size = entries.length;
+
+        fill(0, rootBits, 0, characters);
+    }
+
+    /**
+     * Fills one table (either the root table or a sub-table) with the given characters.
+     *
+     * @param offset     Where in the entries this table starts.
+     * @param bits       How many bits are used to index this table.
+     * @param depth      How many bits of each code have been consumed before this table.
+     * @param characters The characters whose codes continue in this table.
+     */
+    private void fill(int offset, int bits, int depth, int[] characters) {
+
+        // Codes that don't fit into this table. Sorted so that codes sharing
+        // the same sub-table end up next to each other.
+        long[] longCodes = new long[characters.length];
+        int longCodeCount = 0;
+
+        for (int character : characters) {
+
+            int remaining = lengths[character] - depth;
+            long code = codes[character] & mask(remaining);
+
+            if (remaining <= bits) {
+
+                // The code fits, so every index that starts with it decodes to this character.
+                int first = (int) (code << (bits - remaining));
+                int span = 1 << (bits - remaining);
+
+                Arrays.fill(entries, offset + first, offset + first + span,
+                        LEAF_FLAG | (character << ENTRY_SHIFT) | remaining);
+
+            } else {
+                long index = code >>> (remaining - bits);
+                longCodes[longCodeCount++] = (index << KEY_SHIFT) | character;
+            }
+        }
+
+        Arrays.sort(longCodes, 0, longCodeCount);
+
+        int start = 0;
+
+        // Each group of long codes that share an index gets its own sub-table.
+        while (start < longCodeCount) {
+
+            long index = longCodes[start] >>> KEY_SHIFT;
+
+            int end = start;
+            int maxRemaining = 0;
+
+            while (end < longCodeCount && (longCodes[end] >>> KEY_SHIFT) == index) {
+                int character = (int) (longCodes[end] & KEY_MASK);
+                maxRemaining = Math.max(maxRemaining, lengths[character] - depth - bits);
+                end++;
+            }
+
+            int subBits = Math.min(Main.HUFFMAN_TABLE_BITS, maxRemaining);
+            int subOffset = allocate(1 << subBits);
+
+            entries[offset + (int) index] = (subOffset << ENTRY_SHIFT) | subBits;
+
+            int[] subCharacters = new int[end - start];
+
+            for (int i = start; i < end; i++) {
+                subCharacters[i - start] = (int) (longCodes[i] & KEY_MASK);
+            }
+
+            fill(subOffset, subBits, depth + bits, subCharacters);
+
+            start = end;
+        }
+    }
+
+    /**
+     * Reserves room for a new sub-table at the end of the entries.
+     *
+     * @param tableSize How many entries the sub-table has.
+     * @return Where the sub-table starts.
+     */
+    private int allocate(int tableSize) {
+
+        if (size + tableSize > entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(entries.length * 2, size + tableSize));
+        }
+
+        int offset = size;
+
+        size += tableSize;
+
+        return offset;
+    }
+
+    /**
+     * Decodes the next character from the stream. Only the bits that belong to the
+     * character's code are consumed.
+     *
+     * @param binaryReadTool The stream to read the code from.
+     * @return The decoded character.
+     * @throws IOException If we can't read from the stream, if the bits do not match
+     *                     any code, or if the stream ends in the middle of the code
+     *                     (the file has been corrupted).
+     */
+    int decode(BinaryReadTool binaryReadTool) throws IOException {
+
+        int offset = 0;
+        int bits = rootBits;
+
+        while (true) {
+
+            int entry = entries[offset + binaryReadTool.peekBits(bits)];
+
+            if ((entry & LEAF_FLAG) != 0) {
+                binaryReadTool.skipBits(entry & ENTRY_MASK);
+                return (entry & ~LEAF_FLAG) >>> ENTRY_SHIFT;
+            }
+
+            if (entry == 0) {
+                throw new IOException("Corrupted file.");
+            }
+
+            // Continue in the sub-table with the bits that follow.
+            binaryReadTool.skipBits(bits);
+
+            offset = entry >>> ENTRY_SHIFT;
+            bits = entry & ENTRY_MASK;
+        }
+    }
+
+    /**
+     * Creates a mask that keeps the given amount of the lowest bits.
+     *
+     * @param count How many bits to keep.
+     * @return The mask as a long.
+     */
+    private static long mask(int count) {
+        if (count >= Long.SIZE) {
+            return -1L;
+        }
+
+        return (1L << count) - 1;
+    }
+}
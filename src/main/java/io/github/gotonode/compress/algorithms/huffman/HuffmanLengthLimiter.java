@@ -0,0 +1,144 @@
+package io.github.gotonode.compress.algorithms.huffman;
+
+import java.util.Arrays;
+
+/**
+ * Finds the optimal Huffman code lengths so that no code is longer than the given limit.
+ * <p>
+ * A normal Huffman tree can get very deep when the weights are skewed (for an example
+ * when they follow the Fibonacci sequence), and then some codes might need more bits
+ * than fit into a 32-bit or 64-bit integer. Limiting the code length costs a little bit
+ * of compression, but keeps both compression and decompression on their fast paths.
+ * <p>
+ * Uses the package-merge algorithm. The characters are sorted by weight, and then the
+ * two lightest items are repeatedly combined into packages, one level per allowed bit.
+ * The lightest 2n - 2 items of the final list tell how many bits each character gets.
+ * <p>
+ * Sources:
+ * • <a href="https://en.wikipedia.org/wiki/Package-merge_algorithm">Package-merge algorithm</a> (Wikipedia)
+ */
+final class HuffmanLengthLimiter {
+
+    private HuffmanLengthLimiter() {
+        // Cannot create an instance of this class by purpose.
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Calculates the code lengths for the given weights, so that no code is longer than the limit.
+     *
+     * @param weights       The weight of each character. Characters with a weight of 0 get no code.
+     * @param maxCodeLength The longest allowed code length. Must be big enough for all of the characters.
+     * @return The code length of each character.
+     */
+    static int[] limit(long[] weights, int maxCodeLength) {
+
+        int[] lengths = new int[weights.length];
+
+        // The used characters, sorted by their weights (lightest first).
+        int[] characters = HuffmanCanonicalCodes.sortByWeight(weights);
+
+        int count = characters.length;
+
+        if (count == 0) {
+            return lengths;
+        }
+
+        if (count == 1) {
+            lengths[characters[0]] = 1;
+            return lengths;
+        }
+
+        if (maxCodeLength < Long.SIZE - 1 && (1L << maxCodeLength) < count) {
+            throw new IllegalArgumentException("Code length limit " + maxCodeLength
+                    + " is too small for " + count + " characters.");
+        }
+
+        long[] leafWeights = new long[count];
+
+        for (int i = 0; i < count; i++) {
+            leafWeights[i] = weights[characters[i]];
+        }
+
+        // For each level, tells whether each item of the merged list is a package
+        // (true) or a single character (false). Level 0 only has characters.
+        boolean[][] packageFlags = new boolean[maxCodeLength][];
+
+        long[] previous = leafWeights;
+
+        for (int level = 1; level < maxCodeLength; level++) {
+
+            // Combine the items of the previous level pairwise into packages.
+            long[] packages = new long[previous.length / 2];
+
+            for (int i = 0; i < packages.length; i++) {
+                packages[i] = previous[2 * i] + previous[2 * i + 1];
+            }
+
+            long[] merged = new long[count + packages.length];
+            boolean[] flags = new boolean[merged.length];
+
+            merge(leafWeights, packages, merged, flags);
+
+            packageFlags[level] = flags;
+            previous = merged;
+        }
+
+        // Take the lightest 2n - 2 items of the final list. Every time a character
+        // is taken (on its own or inside a package) its code gets one bit longer.
+        int taken = 2 * count - 2;
+
+        for (int level = maxCodeLength - 1; level >= 0; level--) {
+
+            int takenPackages = 0;
+
+            if (level > 0) {
+                for (int i = 0; i < taken; i++) {
+                    if (packageFlags[level][i]) {
+                        takenPackages++;
+                    }
+                }
+            }
+
+            // Characters appear in the merged list in the same order as in the sorted list.
+            int takenCharacters = taken - takenPackages;
+
+            for (int i = 0; i < takenCharacters; i++) {
+                lengths[characters[i]]++;
+            }
+
+            // Each package consists of two items from the previous level.
+            taken = 2 * takenPackages;
+        }
+
+        return lengths;
+    }
+
+    /**
+     * Merges the sorted characters and the sorted packages into one sorted list. On equal
+     * weights, characters go before packages.
+     *
+     * @param leafWeights The weights of the characters, sorted.
+     * @param packages    The weights of the packages, sorted.
+     * @param merged      The merged weights are stored here.
+     * @param flags       Whether each merged item is a package is stored here.
+     */
+    private static void merge(long[] leafWeights, long[] packages, long[] merged, boolean[] flags) {
+
+        int leafIndex = 0;
+        int packageIndex = 0;
+
+        for (int i = 0; i < merged.length; i++) {
+
+            boolean takePackage = leafIndex == leafWeights.length
+                    || (packageIndex < packages.length && packages[packageIndex] < leafWeights[leafIndex]);
+
+            if (takePackage) {
+                merged[i] = packages[packageIndex++];
+                flags[i] = true;
+            } else {
+                merged[i] = leafWeights[leafIndex++];
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.gotonode.compress.algorithms.huffman;
+
+import io.github.gotonode.compress.main.Main;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Estimates the weights of the characters from samples of a file, instead of reading
+ * all of it. Used by the sampling option of {@link Huffman}, so that a very large file
+ * only needs to be read once (while it's being coded) instead of twice.
+ * <p>
+ * The samples are windows of {@link Main#HUFFMAN_SAMPLE_WINDOW_SIZE} bytes, spread
+ * evenly over the file. As a character might not show up in any of the samples, every
+ * character gets a weight of at least one, so that each of them has a code. Files that
+ * are small enough to be read whole are counted exactly, and get no extra weights.
+ */
+final class HuffmanSampler {
+
+    private HuffmanSampler() {
+        // Cannot create an instance of this class by purpose.
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Reads samples of the file and counts the characters in them.
+     *
+     * @param file       The file to sample.
+     * @param dataLength The length of the file in bytes.
+     * @return The weight of each character in the samples.
+     * @throws IOException If we can't read the file, or if it's shorter than expected.
+     */
+    static long[] sample(File file, long dataLength) throws IOException {
+
+        long[] weights = new long[Main.ALPHABET_SIZE];
+
+        long windowSize = Main.HUFFMAN_SAMPLE_WINDOW_SIZE;
+        long windowCount = Main.HUFFMAN_SAMPLE_WINDOWS;
+
+        // If the windows would cover the whole file anyway, it's simply counted in full.
+        boolean wholeFile = dataLength <= windowSize * windowCount;
+
+        if (wholeFile) {
+            windowCount = (dataLength + windowSize - 1) / windowSize;
+        }
+
+        byte[] buffer = new byte[Main.HUFFMAN_SAMPLE_WINDOW_SIZE];
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+
+            for (long window = 0; window < windowCount; window++) {
+
+                // The windows start at even distances from each other.
+                long start = wholeFile ? window * windowSize : window * (dataLength / windowCount);
+
+                int length = (int) Math.min(windowSize, dataLength - start);
+
+                randomAccessFile.seek(start);
+                randomAccessFile.readFully(buffer, 0, length);
+
+                for (int i = 0; i < length; i++) {
+                    weights[buffer[i] & 0xff]++;
+                }
+            }
+        }
+
+        if (!wholeFile) {
+
+            // Characters missing from the samples might still be somewhere in the file.
+            for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+                weights[character] = Math.max(weights[character], 1);
+            }
+        }
+
+        return weights;
+    }
+}
@@ -1,14 +1,23 @@
 package io.github.gotonode.compress.algorithms.lzw;
 
+import io.github.gotonode.compress.algorithms.BlockCoder;
 import io.github.gotonode.compress.algorithms.CompressAlgorithm;
+import io.github.gotonode.compress.enums.ProfilerCounters;
+import io.github.gotonode.compress.enums.ProfilerPhases;
 import io.github.gotonode.compress.io.BinaryReadTool;
 import io.github.gotonode.compress.io.BinaryWriteTool;
 import io.github.gotonode.compress.main.Main;
 import io.github.gotonode.compress.ui.UiController;
+import io.github.gotonode.compress.utils.PhaseProfiler;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * This class contains my personal Lempel–Ziv–Welch implementation.
@@ -23,7 +32,21 @@ import java.io.IOException;
  * Thus, LZW works best with data that has many long, repeating strings containing the same
  * data. Usually this is the case with text files, but not the case with binary files.
  * <p>
- * Uses {@link LZWNode} and {@link LZWTree} internally.
+ * The codewords start out with 9 bits and grow as the dictionary grows, up to a limit
+ * that can be set with {@link #setMaxCodewordWidth(int)}. If the compression gets worse
+ * once the dictionary is full, the dictionary is emptied and built again.
+ * <p>
+ * In the chunked mode (see {@link #setChunkSize(int)}), the data is split into chunks
+ * that are each coded with a dictionary of their own. The chunks don't depend on each
+ * other, so they're compressed and decompressed in parallel.
+ * <p>
+ * Small files can be compressed with a preset dictionary (see {@link LZWPresetDictionary}),
+ * so that the dictionary doesn't start out empty.
+ * <p>
+ * The time spent in each phase, along with the number of dictionary operations, can be
+ * measured with {@link #setProfiler(PhaseProfiler)}.
+ * <p>
+ * Uses {@link LZWCoder}, {@link LZWDictionary} and {@link LZWRatioMonitor} internally.
  * <p>
  * Sources:
  * • <a href="https://en.wikipedia.org/wiki/Lempel%E2%80%93Ziv%E2%80%93Welch">Lempel–Ziv–Welch</a> (Wikipedia)
@@ -38,6 +61,18 @@ public class LZW implements CompressAlgorithm {
     private final File source;
     private final File target;
 
+    // The longest codewords used when compressing. Limits the size of the dictionary.
+    private int maxCodewordWidth = Main.CODEWORD_WIDTH;
+
+    // How many bytes each chunk holds in the chunked mode. Zero means no chunks.
+    private int chunkSize;
+
+    // The strings the dictionary starts out with, or null for none.
+    private LZWPresetDictionary presetDictionary;
+
+    // Times the phases of compressing and decompressing, and counts the dictionary operations.
+    private PhaseProfiler profiler = PhaseProfiler.DISABLED;
+
     /**
      * Creates a new LZW object. This is used to compress/decompress a file using LZW.
      *
@@ -64,6 +99,90 @@ public class LZW implements CompressAlgorithm {
 
     }
 
+    /**
+     * Limits how long the codewords can get when compressing. The dictionary holds 2 to
+     * the power of this many strings, after which no more strings are added to it.
+     * <p>
+     * The limit is not needed for decompressing, as it is stored in the file.
+     *
+     * @param maxCodewordWidth The longest allowed codeword in bits, between
+     *                         {@link Main#CODEWORD_MIN_WIDTH} and {@link Main#CODEWORD_WIDTH}.
+     */
+    public void setMaxCodewordWidth(int maxCodewordWidth) {
+
+        if (maxCodewordWidth < Main.CODEWORD_MIN_WIDTH || maxCodewordWidth > Main.CODEWORD_WIDTH) {
+            throw new IllegalArgumentException("Invalid codeword width: " + maxCodewordWidth);
+        }
+
+        this.maxCodewordWidth = maxCodewordWidth;
+    }
+
+    /**
+     * Turns on the chunked mode, where the data is split into chunks of the given size.
+     * Each chunk gets a dictionary of its own, so the chunks can be coded in parallel.
+     * Smaller chunks are faster to code on many cores, but their dictionaries have less
+     * data to learn from, so bigger chunks compress better.
+     * <p>
+     * The chunk size is not needed for decompressing, as it is stored in the file.
+     *
+     * @param chunkSize The size of a chunk in bytes (for an example {@link Main#LZW_CHUNK_SIZE}),
+     *                  or 0 to code the whole file as a single stream (the default).
+     */
+    public void setChunkSize(int chunkSize) {
+
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets the preset dictionary, whose strings are in the dictionary from the start. Mostly
+     * useful with small files, which are over before LZW has learned much from them.
+     * <p>
+     * Unlike the other settings, the same preset must also be given when decompressing.
+     * Only its ID is stored in the compressed file.
+     *
+     * @param presetDictionary The preset dictionary, or null for none (the default).
+     */
+    public void setPresetDictionary(LZWPresetDictionary presetDictionary) {
+        this.presetDictionary = presetDictionary;
+    }
+
+    @Override
+    public void setProfiler(PhaseProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Checks whether the given identification code (the first integer of a file)
+     * belongs to any of the LZW formats.
+     *
+     * @param code The identification code read from the file.
+     * @return True if the file has been compressed with LZW, false otherwise.
+     */
+    public static boolean isLZWCode(int code) {
+        return code == Main.LZW_CODE || code == Main.LZW_CHUNKED_CODE;
+    }
+
+    /**
+     * Creates a coder that codes single chunks in the format of the chunked mode, without
+     * a preset dictionary. Used to compress and decompress streams chunk by chunk.
+     *
+     * @param maxCodewordWidth The longest allowed codeword in bits, between
+     *                         {@link Main#CODEWORD_MIN_WIDTH} and {@link Main#CODEWORD_WIDTH}.
+     * @return The chunk coder, which can be shared by all threads.
+     */
+    public static BlockCoder createBlockCoder(int maxCodewordWidth) {
+
+        if (maxCodewordWidth < Main.CODEWORD_MIN_WIDTH || maxCodewordWidth > Main.CODEWORD_WIDTH) {
+            throw new IllegalArgumentException("Invalid codeword width: " + maxCodewordWidth);
+        }
+
+        return new LZWCoder(maxCodewordWidth, null, PhaseProfiler.DISABLED);
+    }
+
     @Override
     public String toString() {
         return "LZW{" +
@@ -72,12 +191,27 @@ public class LZW implements CompressAlgorithm {
                 '}';
     }
 
+    /**
+     * Compresses the input file and produces the output file. The whole file is
+     * coded as a single stream, unless the chunked mode has been turned on.
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
     @Override
     public boolean compress() {
 
-        // This marks the end of the file. It's the first unavailable
-        // character, meaning it's alphabet + 1.
-        int endOfFile = Main.ALPHABET_SIZE + 1;
+        // The preset must fit into the dictionary, with room to spare.
+        if (presetDictionary != null && presetDictionary.getMinCodewordWidth() > maxCodewordWidth) {
+            UiController.printErrorMessage(new IllegalArgumentException("The preset dictionary needs codewords of "
+                    + presetDictionary.getMinCodewordWidth() + " bits."));
+            return false;
+        }
+
+        if (chunkSize > 0) {
+            return compressChunks();
+        }
+
+        profiler.start(ProfilerPhases.IO);
 
         // Write an integer to indicate that this file is LZW coded.
         try {
@@ -87,183 +221,211 @@ public class LZW implements CompressAlgorithm {
             return false;
         }
 
-        // Contains all of the data. Not practical with larger files. If
-        // a file is larger than available physical memory, virtual memory
-        // is used and that means HDD/SDD reading and writing which is a
-        // lot slower than pure-RAM processing.
-        String data;
+        // The data is read one byte at a time while it's being compressed, so
+        // its length is taken from the file instead of counting it beforehand.
+        long dataLength = source.length();
 
+        // Write the length of the data into the output file. This
+        // is measured in bytes (8 bits), and stored as a 64-bit long.
+        // The longest codeword width and the ID of the preset follow it.
         try {
-            data = binaryReadTool.readData();
+            binaryWriteTool.writeLong(dataLength);
+            writeSettings();
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
-        int dataLength = data.length();
+        profiler.start(ProfilerPhases.ENCODE);
 
-        // Write the length of the data into the output file. This
-        // is measured in bytes (8 bits).
         try {
-            binaryWriteTool.writeInt(dataLength);
+            new LZWCoder(maxCodewordWidth, presetDictionary, profiler).encode(binaryReadTool, binaryWriteTool);
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
-        LZWTree lzwTree = new LZWTree();
+        profiler.start(ProfilerPhases.IO);
 
-        // Create the tree by first populating it with single characters
-        // through the alphabet (A to Z, 0 to 9 and so forth).
-        for (int index = 0; index < Main.ALPHABET_SIZE; index++) {
-            lzwTree.add((char) index, index);
+        try {
+            // Write the bits to the file and close the stream. It cannot be reused.
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
         }
 
-        // These are used to test where the biggest performance gains can be gained.
-        long timeSpentFetchingPrefixes = 0;
-        long timeSpentWritingCodewords = 0;
-        long timeSpentAddingNodesToTree = 0;
-        long timeSpentSeekingForward = 0;
+        profiler.stop();
+
+        // The compression operation succeeded, so a true is returned.
+        return true;
+    }
+
+    /**
+     * Compresses the input file in the chunked mode. The chunks are read one after another,
+     * and handed over to a fork/join pool to be coded. The coded chunks are written in
+     * their original order.
+     * <p>
+     * Each chunk is written as its original length, its compressed length and the
+     * compressed chunk itself. A length of zero marks the end of the chunks.
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean compressChunks() {
 
-        long start;
+        LZWCoder lzwCoder = new LZWCoder(maxCodewordWidth, presetDictionary, profiler);
 
-        int offset = 0;
-        int itemsInTree = 0;
+        ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
 
-        // Then create prefixed codewords for longer substrings. Optimally,
-        // a longer substring will get a shorter key.
-        while (data.length() > 0) {
+        // Only a few chunks per thread are kept in memory at once.
+        int maxPendingChunks = forkJoinPool.getParallelism() * 2;
 
-            // TODO: This whole function is quite slow.
+        Queue<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+        Queue<Integer> pendingLengths = new ArrayDeque<>();
 
-            // It contains measuring code. Go to the Main-class to turn verbose
-            // debug logging on to see the results.
+        profiler.start(ProfilerPhases.IO);
 
-            // I do believe it's quite effective at what it does (in finding
-            // the prefixes), but this comes at a performance/memory cost.
+        try {
+            // Write an integer to indicate that this file is LZW coded in chunks.
+            binaryWriteTool.writeInt(Main.LZW_CHUNKED_CODE);
 
-            // Possible remedies:
-            // - empty the dictionary (tree) intermittently
-            // - don't read the full data as a String
-            // - read the full data, but as an array of characters
-            // - write in a different loop
+            // The length is only informative here, as each chunk has its own length.
+            binaryWriteTool.writeLong(source.length());
+            writeSettings();
 
-            // For testing purposes. Ignore the following.
-            start = System.currentTimeMillis();
-            // For testing purposes. Ignore the previous.
+            // Reading the chunks and writing the coded ones is counted in, as it
+            // happens while the chunks are being coded.
+            profiler.start(ProfilerPhases.ENCODE);
 
-            String prefix = lzwTree.prefix(data);
+            while (binaryReadTool.streamHasData()) {
 
-            // For testing purposes. Ignore the following.
-            timeSpentFetchingPrefixes += System.currentTimeMillis() - start;
+                byte[] chunk = new byte[chunkSize];
+                int length = binaryReadTool.readBytes(chunk, chunkSize);
 
-            start = System.currentTimeMillis();
-            // For testing purposes. Ignore the previous.
+                pendingChunks.add(forkJoinPool.submit(() -> lzwCoder.encode(chunk, length)));
+                pendingLengths.add(length);
 
-            try {
-                binaryWriteTool.writeCodeword(lzwTree.get(prefix));
-            } catch (IOException ex) {
-                UiController.printErrorMessage(ex);
-                return false;
-            }
+                profiler.count(ProfilerCounters.BLOCKS, 1);
 
-            // For testing purposes. Ignore the following.
-            timeSpentWritingCodewords += System.currentTimeMillis() - start;
-            // For testing purposes. Ignore the previous.
-
-            // The following code reduces the memory usage by a wide margin, but increases
-            // the time it takes to perform the compression by a lot. Thus is is disabled.
-            // Perhaps the solution to this problem lies in simply clearing out the
-            // dictionary intermittently. Within the timeframe allotted, I was unable to do so.
-            if (false) {
-                if (lzwTree.getNodes() >= 100) {
-                    lzwTree = new LZWTree();
-                    for (int index = 0; index < Main.ALPHABET_SIZE; index++) {
-                        lzwTree.add((char) index, index);
-                    }
-                    prefix = "";
+                if (pendingChunks.size() >= maxPendingChunks) {
+                    writeChunk(pendingLengths.poll(), pendingChunks.poll().get());
                 }
             }
 
-            // Cached for debugging purposes (so we don't need to constantly
-            // pop into the method to fetch the value).
-            int prefixLength = prefix.length();
-
-            // For testing purposes. Ignore the following.
-            start = System.currentTimeMillis();
-            // For testing purposes. Ignore the previous.
-
-            // If the prefixes length is less than of the remaining data's length,
-            // we'll add it to the tree for further processing.
-            if (prefixLength < data.length() && Main.CODEWORD_COUNT > endOfFile) {
-                lzwTree.add(data.substring(0, prefixLength + 1), endOfFile);
-                itemsInTree++;
-                endOfFile++;
+            while (!pendingChunks.isEmpty()) {
+                writeChunk(pendingLengths.poll(), pendingChunks.poll().get());
             }
 
-            // For testing purposes. Ignore the following.
-            timeSpentAddingNodesToTree += System.currentTimeMillis() - start;
+            profiler.start(ProfilerPhases.IO);
 
-            start = System.currentTimeMillis();
-            // For testing purposes. Ignore the previous.
+            // No more chunks.
+            binaryWriteTool.writeInt(0);
 
-            // Seek forward by how much progress we just made.
-            data = data.substring(prefixLength);
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException | InterruptedException | ExecutionException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
+        }
 
-            // It seems that the substring-part of this loop takes about
-            // 86 % of the total time. Biggest gains can be won here.
+        profiler.stop();
 
-            offset += prefixLength;
+        return true;
+    }
 
-            // For testing purposes. Ignore the following.
-            timeSpentSeekingForward += System.currentTimeMillis() - start;
-            // For testing purposes. Ignore the previous.
-        }
+    /**
+     * Writes the longest codeword width and the ID of the preset dictionary (0 if
+     * there's none) into the output file.
+     *
+     * @throws IOException If we can't write to the stream.
+     */
+    private void writeSettings() throws IOException {
+        binaryWriteTool.write(maxCodewordWidth);
+        binaryWriteTool.writeInt(presetDictionary == null ? 0 : presetDictionary.getId());
+    }
 
-        // The following are only printed if the DEBUG constant is enabled.
-        if (Main.DEBUG) {
-            System.out.println("Time spent finding prefixes (ms): " + timeSpentFetchingPrefixes);
-            System.out.println("Time spent writing codewords (ms): " + timeSpentWritingCodewords);
-            System.out.println("Time spent adding nodes to tree (ms): " + timeSpentAddingNodesToTree);
-            System.out.println("Time spent seeking forward (ms): " + timeSpentSeekingForward);
+    /**
+     * Writes a single compressed chunk into the output file.
+     *
+     * @param length         How many bytes the chunk held before it was compressed.
+     * @param compressedData The compressed chunk.
+     * @throws IOException If we can't write to the stream.
+     */
+    private void writeChunk(int length, byte[] compressedData) throws IOException {
+        binaryWriteTool.writeInt(length);
+        binaryWriteTool.writeInt(compressedData.length);
+        binaryWriteTool.writeBytes(compressedData, 0, compressedData.length);
+    }
+
+    /**
+     * Decompresses the input file and produces the output file. The format (a single
+     * stream or chunks) is detected from the file.
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
+    @Override
+    public boolean decompress() {
 
-            long total = timeSpentAddingNodesToTree + timeSpentFetchingPrefixes
-                    + timeSpentSeekingForward + timeSpentWritingCodewords;
+        boolean success = false;
 
-            System.out.println("Total time spent (ms): " + total);
+        try {
+            success = decompressFile();
+        } finally {
+            if (!success) {
+                closeAfterFailure();
+            }
         }
 
-        // Once the dictionary is done, write the ending character.
-        try {
-            binaryWriteTool.writeCodeword(Main.ALPHABET_SIZE);
-        } catch (IOException ex) {
-            UiController.printErrorMessage(ex);
-            return false;
+        return success;
+    }
+
+    /**
+     * Closes the files after decompressing has failed. The output file is cut back to
+     * what was decompressed before the failure, instead of being left at its full size.
+     */
+    private void closeAfterFailure() {
+
+        // The files might not have been opened at all.
+        if (binaryReadTool == null || binaryWriteTool == null) {
+            return;
         }
 
         try {
-            // Write the bits to the file and close the stream. It cannot be reused.
-            binaryWriteTool.flushAndClose();
+            binaryWriteTool.closeAfterFailure();
             binaryReadTool.close();
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
-            return false;
         }
+    }
 
-        // This doesn't seem to have an effect on anything? More profiling necessary.
-        System.gc();
-
-        // The compression operation succeeded, so a true is returned.
-        return true;
+    /**
+     * Sets the length of the output file to the length of the data stored in the header.
+     * The header isn't trusted as it is, so the output file is made at most
+     * {@link Main#PREALLOCATION_MAX_RATIO} times as big as the compressed file. Data that
+     * compresses better than that is still decompressed, the file just grows past it.
+     *
+     * @param dataLength The length of the data, from the header.
+     * @throws IOException If we can't grow the output file.
+     */
+    private void preallocate(long dataLength) throws IOException {
+        binaryWriteTool.preallocate(Math.min(dataLength, source.length() * Main.PREALLOCATION_MAX_RATIO));
     }
 
-    @Override
-    public boolean decompress() {
+    /**
+     * Decompresses the file, in whichever format it was compressed in (a single stream
+     * or chunks).
+     *
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean decompressFile() {
 
         // Read the first integer in. It is used to determine what algorithm
         // was used to compress this file.
         int code;
 
+        profiler.start(ProfilerPhases.IO);
+
         try {
             code = binaryReadTool.readInt();
         } catch (IOException ex) {
@@ -271,89 +433,72 @@ public class LZW implements CompressAlgorithm {
             return false;
         }
 
+        if (code == Main.LZW_OLD_CODE) {
+            throw new RuntimeException("Unsupported format version.");
+        }
+
         // If the identification 32-bit integer is not what we'd expect for this algorithm.
-        if (code != Main.LZW_CODE) {
+        if (!isLZWCode(code)) {
             throw new RuntimeException("Corrupted file.");
         }
 
-        // We'll read (as a 32-bit integer) the data area's length from
-        // the file. A compressed file always has this byte. Unlike with Huffman,
-        // LZW doesn't use this information. So we'll just read and
-        // forget about it.
+        // We'll read (as a 64-bit long) the data area's length from
+        // the file. A compressed file always has this long. Unlike with Huffman,
+        // LZW doesn't need this information to decode, but it's used to make the
+        // output file big enough right away. The longest codeword width and the
+        // preset are needed, though.
+        long dataLength;
+        int codewordWidth;
+        int presetId;
+
         try {
-            binaryReadTool.readInt();
+            dataLength = binaryReadTool.readLong();
+            codewordWidth = binaryReadTool.readChar();
+            presetId = binaryReadTool.readInt();
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
-        // Create a table of Strings that contains all of our codewords.
-        String[] table = new String[Main.CODEWORD_COUNT];
-
-        // This index is used past the following loop. That's why it's
-        // defined here and not in the loop itself.
-        int index;
+        if (codewordWidth < Main.CODEWORD_MIN_WIDTH || codewordWidth > Main.CODEWORD_WIDTH) {
+            throw new RuntimeException("Corrupted file.");
+        }
 
-        // Creates the dictionary (table) with single-byte characters.
-        for (index = 0; index < Main.ALPHABET_SIZE; index++) {
-            table[index] = String.valueOf((char) index);
+        // The file was compressed with a preset, and the same one must be used here.
+        if (presetId != 0 && (presetDictionary == null || presetDictionary.getId() != presetId)) {
+            UiController.printErrorMessage(new IOException("The file needs the preset dictionary "
+                    + Integer.toHexString(presetId) + "."));
+            return false;
         }
 
-        // We'll start here (next step from index). Set it to empty.
-        table[index++] = "";
+        if (presetId != 0 && presetDictionary.getMinCodewordWidth() > codewordWidth) {
+            throw new RuntimeException("Corrupted file.");
+        }
 
-        // Stores the codeword we're processing. Useful for debugging.
-        int codeword;
+        LZWCoder lzwCoder = new LZWCoder(codewordWidth, presetId == 0 ? null : presetDictionary, profiler);
 
-        // Read in the very first codeword.
         try {
-            codeword = binaryReadTool.readCodeword();
+            preallocate(dataLength);
         } catch (IOException ex) {
             UiController.printErrorMessage(ex);
             return false;
         }
 
-        // Used to hold the codeword value from the table. Updated with
-        // new values from the table with added characters from the input stream.
-        String value = table[codeword];
-
-        // Read in data from the compressed file (codewords) and write them
-        // to the output file. Once we have exhausted the codeword-base
-        // exit the loop.
-        while (true) {
-
-            try {
-                binaryWriteTool.writeString(value);
-                codeword = binaryReadTool.readCodeword();
-            } catch (IOException ex) {
-                UiController.printErrorMessage(ex);
-                return false;
-            }
-
-            // We have it all. Time to exit the loop.
-            if (codeword == Main.ALPHABET_SIZE) {
-                break;
-            }
-
-            // Read in the next value from the table. Store it for convenience.
-            String current = table[codeword];
-
-            // If our index matches the current codeword, prepare for
-            // the value to be changed. Add the first character of it.
-            if (index == codeword) {
-                current = value + value.charAt(0);
-            }
+        if (code == Main.LZW_CHUNKED_CODE) {
+            return decompressChunks(lzwCoder);
+        }
 
-            // If we can, place the newly-generated value into the next
-            // available slot on the table.
-            if (index < Main.CODEWORD_COUNT) {
-                table[index++] = value + current.charAt(0);
-            }
+        profiler.start(ProfilerPhases.DECODE);
 
-            // Move on the process the next value, replacing the old one.
-            value = current;
+        try {
+            lzwCoder.decode(binaryReadTool, binaryWriteTool);
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
         }
 
+        profiler.start(ProfilerPhases.IO);
+
         try {
             // Write the bits to the file and close the stream. It cannot be reused.
             binaryWriteTool.flushAndClose();
@@ -363,9 +508,79 @@ public class LZW implements CompressAlgorithm {
             return false;
         }
 
+        profiler.stop();
+
         // At this point, everything went well and we can return
         // a true boolean value to mark the success.
         return true;
     }
 
+    /**
+     * Decompresses a file that was compressed in the chunked mode. The header has already
+     * been read. Just like when compressing, the chunks are decoded in parallel and
+     * written in their original order.
+     *
+     * @param lzwCoder The coder to decode the chunks with.
+     * @return True if the operation succeeded, false otherwise.
+     */
+    private boolean decompressChunks(LZWCoder lzwCoder) {
+
+        ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+
+        int maxPendingChunks = forkJoinPool.getParallelism() * 2;
+
+        Queue<Future<byte[]>> pendingChunks = new ArrayDeque<>();
+
+        profiler.start(ProfilerPhases.DECODE);
+
+        try {
+            int length = binaryReadTool.readInt();
+
+            while (length != 0) {
+
+                int compressedLength = binaryReadTool.readInt();
+
+                if (length < 0 || compressedLength < 0) {
+                    throw new IOException("Corrupted file.");
+                }
+
+                byte[] compressedData = new byte[compressedLength];
+
+                if (binaryReadTool.readBytes(compressedData, compressedLength) != compressedLength) {
+                    throw new IOException("Corrupted file.");
+                }
+
+                int chunkLength = length;
+
+                pendingChunks.add(forkJoinPool.submit(() -> lzwCoder.decode(compressedData, chunkLength)));
+
+                profiler.count(ProfilerCounters.BLOCKS, 1);
+
+                if (pendingChunks.size() >= maxPendingChunks) {
+                    byte[] chunk = pendingChunks.poll().get();
+                    binaryWriteTool.writeBytes(chunk, 0, chunk.length);
+                }
+
+                length = binaryReadTool.readInt();
+            }
+
+            while (!pendingChunks.isEmpty()) {
+                byte[] chunk = pendingChunks.poll().get();
+                binaryWriteTool.writeBytes(chunk, 0, chunk.length);
+            }
+
+            profiler.start(ProfilerPhases.IO);
+
+            binaryWriteTool.flushAndClose();
+            binaryReadTool.close();
+        } catch (IOException | InterruptedException | ExecutionException ex) {
+            UiController.printErrorMessage(ex);
+            return false;
+        }
+
+        profiler.stop();
+
+        return true;
+    }
+
 }
@@ -0,0 +1,380 @@
+package io.github.gotonode.compress.algorithms.lzw;
+
+import io.github.gotonode.compress.algorithms.BlockCoder;
+import io.github.gotonode.compress.enums.ProfilerCounters;
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.io.BinaryWriteTool;
+import io.github.gotonode.compress.main.Main;
+import io.github.gotonode.compress.utils.PhaseProfiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Does the actual LZW coding for {@link LZW}, from one stream into another. The whole
+ * file is coded as a single stream, or in the chunked mode, each chunk is coded on
+ * its own (in memory) with a dictionary of its own.
+ * <p>
+ * The codewords start out with 9 bits and grow by one bit whenever the dictionary has
+ * grown past what the current width can hold, up to the longest codeword width. The
+ * width of each codeword is found from how many codewords have come before it, so the
+ * widths themselves don't need to be stored.
+ * <p>
+ * Once the dictionary is full, {@link LZWRatioMonitor} keeps an eye on the compression
+ * ratio. If it gets clearly worse, the compressor writes a special clear codeword and
+ * empties its dictionary, and the decompressor does the same when it reads it.
+ * <p>
+ * With a preset dictionary, both sides start out with (and go back to, when the dictionary
+ * is emptied) the strings of the preset, instead of an empty dictionary.
+ * <p>
+ * The dictionary operations are counted into the profiler, once per stream.
+ * <p>
+ * This class holds no state between calls, so one instance can be shared by all threads.
+ */
+class LZWCoder implements BlockCoder {
+
+    // Marks the end of the data.
+    static final int END_OF_DATA = Main.ALPHABET_SIZE;
+
+    // Tells the decompressor that the compressor emptied its dictionary.
+    static final int CLEAR = Main.ALPHABET_SIZE + 1;
+
+    // The first codeword given to a string that's longer than one character.
+    private static final int FIRST_FREE = Main.ALPHABET_SIZE + 2;
+
+    // The longest codewords. Limits the size of the dictionary.
+    private final int maxCodewordWidth;
+
+    // The strings the dictionary starts out with, or null for none.
+    private final LZWPresetDictionary presetDictionary;
+
+    // The first codeword after the strings of the preset.
+    private final int firstFree;
+
+    // Counts the dictionary operations.
+    private final PhaseProfiler profiler;
+
+    /**
+     * Creates a new coder.
+     *
+     * @param maxCodewordWidth The longest allowed codeword in bits. Must be big enough
+     *                         for the preset dictionary.
+     * @param presetDictionary The strings the dictionary starts out with, or null for none.
+     * @param profiler         Counts the dictionary operations. Must be safe to use from
+     *                         several threads in the chunked mode.
+     */
+    LZWCoder(int maxCodewordWidth, LZWPresetDictionary presetDictionary, PhaseProfiler profiler) {
+        this.maxCodewordWidth = maxCodewordWidth;
+        this.presetDictionary = presetDictionary;
+        this.profiler = profiler;
+        this.firstFree = FIRST_FREE + (presetDictionary == null ? 0 : presetDictionary.getSize());
+    }
+
+    /**
+     * Finds out how many bits a codeword takes. Before the n:th codeword has been written,
+     * at most n strings have been added to the dictionary, so the codeword can't be
+     * bigger than the last reserved codeword plus n. Both the compressor and the
+     * decompressor know n, so they always agree on the width.
+     *
+     * @param written          How many codewords have been written before this one, since
+     *                         the dictionary was last emptied.
+     * @param maxCodewordWidth The longest allowed codeword in bits.
+     * @return The width of the codeword in bits.
+     */
+    static int getCodewordWidth(long written, int maxCodewordWidth) {
+
+        long biggestCodeword = Math.min(CLEAR + written, (1L << maxCodewordWidth) - 1);
+
+        return Long.SIZE - Long.numberOfLeadingZeros(biggestCodeword);
+    }
+
+    /**
+     * Compresses everything that's left in the input stream, and ends the codewords
+     * with the ending codeword.
+     *
+     * @param binaryReadTool  The stream to read the data from.
+     * @param binaryWriteTool The stream to write the codewords to.
+     * @throws IOException If we can't read or write.
+     */
+    void encode(BinaryReadTool binaryReadTool, BinaryWriteTool binaryWriteTool) throws IOException {
+
+        int codewordCount = 1 << maxCodewordWidth;
+
+        // The next free codeword. Codewords 256 and 257 are reserved for
+        // the ending codeword and the clear codeword.
+        int endOfFile = firstFree;
+
+        // How many codewords have been written since the dictionary was last
+        // emptied. Tells how wide the next one is. The strings of the preset
+        // count as if they had been written, as they can be used right away.
+        long written = firstFree - FIRST_FREE;
+
+        // How many bytes have been read and how many bits have been written in total.
+        long inputBytes = 0;
+        long outputBits = 0;
+
+        // How many times the dictionary has been searched, added to and emptied,
+        // and how many codewords have been written in total (counted for the profiler).
+        long lookups = 0;
+        long additions = 0;
+        long clears = 0;
+        long codewords = 0;
+
+        // The single characters don't need to be added, as their codewords
+        // are the characters themselves (0 to 255).
+        LZWDictionary lzwDictionary = new LZWDictionary(codewordCount);
+
+        addPreset(lzwDictionary);
+
+        LZWRatioMonitor lzwRatioMonitor = new LZWRatioMonitor(Main.LZW_RATIO_WINDOW);
+
+        // The codeword of the longest string found in the dictionary so far.
+        int prefix = LZWDictionary.NOT_FOUND;
+
+        if (binaryReadTool.streamHasData()) {
+            prefix = binaryReadTool.readChar();
+            inputBytes++;
+        }
+
+        // Then create codewords for longer strings. Each string is extended by
+        // one character at a time, for as long as it's found in the dictionary.
+        // Optimally, a longer string will get a shorter codeword.
+        while (binaryReadTool.streamHasData()) {
+
+            int character = binaryReadTool.readChar();
+            inputBytes++;
+
+            int codeword = lzwDictionary.get(prefix, character);
+            lookups++;
+
+            if (codeword != LZWDictionary.NOT_FOUND) {
+                prefix = codeword;
+                continue;
+            }
+
+            // The string can't be extended any further, so its codeword is written out.
+            int width = getCodewordWidth(written++, maxCodewordWidth);
+            binaryWriteTool.writeCodeword(prefix, width);
+            outputBits += width;
+            codewords++;
+
+            if (endOfFile < codewordCount) {
+
+                // The string along with the next character is added to the dictionary,
+                // as long as there are codewords left.
+                lzwDictionary.add(prefix, character, endOfFile);
+                endOfFile++;
+                additions++;
+
+            } else if (lzwRatioMonitor.isDegraded(inputBytes, outputBits)) {
+
+                // The full dictionary no longer fits the data, so it's emptied. The
+                // decompressor empties its own dictionary once it reads this codeword.
+                width = getCodewordWidth(written, maxCodewordWidth);
+                binaryWriteTool.writeCodeword(CLEAR, width);
+                outputBits += width;
+                codewords++;
+
+                lzwDictionary.clear();
+                addPreset(lzwDictionary);
+                endOfFile = firstFree;
+                written = firstFree - FIRST_FREE;
+                clears++;
+            }
+
+            prefix = character;
+        }
+
+        // The last string has no character after it.
+        if (prefix != LZWDictionary.NOT_FOUND) {
+            binaryWriteTool.writeCodeword(prefix, getCodewordWidth(written++, maxCodewordWidth));
+            codewords++;
+        }
+
+        // Once the dictionary is done, write the ending character.
+        binaryWriteTool.writeCodeword(END_OF_DATA, getCodewordWidth(written, maxCodewordWidth));
+
+        profiler.count(ProfilerCounters.DICTIONARY_LOOKUPS, lookups);
+        profiler.count(ProfilerCounters.DICTIONARY_ADDITIONS, additions);
+        profiler.count(ProfilerCounters.DICTIONARY_CLEARS, clears);
+        profiler.count(ProfilerCounters.CODEWORDS, codewords + 1);
+    }
+
+    /**
+     * Decompresses codewords from the input stream until the ending codeword.
+     *
+     * @param binaryReadTool  The stream to read the codewords from.
+     * @param binaryWriteTool The stream to write the data to.
+     * @return How many bytes were written.
+     * @throws IOException If we can't read or write, or if the codewords are corrupted.
+     */
+    long decode(BinaryReadTool binaryReadTool, BinaryWriteTool binaryWriteTool) throws IOException {
+
+        int codewordCount = 1 << maxCodewordWidth;
+
+        // How many codewords have been read since the dictionary was last
+        // emptied. Tells how wide the next one is.
+        long read = firstFree - FIRST_FREE;
+
+        // How many bytes have been written.
+        long dataLength = 0;
+
+        // How many strings have been added to the table, how many times it has been
+        // emptied, and how many codewords have been read (counted for the profiler).
+        long additions = 0;
+        long clears = 0;
+        long codewords = 1;
+
+        // The table of codewords. Each string is stored as the codeword of its prefix
+        // and the character that follows it, along with the length of the string.
+        int[] prefixes = new int[codewordCount];
+        byte[] suffixes = new byte[codewordCount];
+        int[] lengths = new int[codewordCount];
+
+        // Creates the dictionary (table) with single-byte characters.
+        for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+            suffixes[character] = (byte) character;
+            lengths[character] = 1;
+        }
+
+        // The strings of the preset follow the reserved codewords.
+        for (int codeword = FIRST_FREE; codeword < firstFree; codeword++) {
+            prefixes[codeword] = presetDictionary.getPrefix(codeword - FIRST_FREE);
+            suffixes[codeword] = presetDictionary.getSuffix(codeword - FIRST_FREE);
+            lengths[codeword] = lengths[prefixes[codeword]] + 1;
+        }
+
+        // Each string is spelled out here before it's written. No string can be
+        // longer than the number of codewords.
+        byte[] buffer = new byte[codewordCount + 1];
+
+        // The next free slot on the table.
+        int index = firstFree;
+
+        // The codeword of the previous string. None at the start, and after the table is emptied.
+        int previous = LZWDictionary.NOT_FOUND;
+
+        // Read in codewords and write their strings out. An empty file only has the ending codeword.
+        int codeword = binaryReadTool.readCodeword(getCodewordWidth(read++, maxCodewordWidth));
+
+        while (codeword != END_OF_DATA) {
+
+            if (codeword == CLEAR) {
+
+                // The compressor emptied its dictionary, so we'll do the same.
+                index = firstFree;
+                read = firstFree - FIRST_FREE;
+                previous = LZWDictionary.NOT_FOUND;
+                clears++;
+
+            } else {
+
+                // The codeword can't refer to a string that hasn't been added yet.
+                if (codeword > index || (previous == LZWDictionary.NOT_FOUND && codeword >= firstFree)) {
+                    throw new IOException("Corrupted file.");
+                }
+
+                // If our index matches the current codeword, the string isn't on the
+                // table yet. It's the previous string plus its own first character.
+                int string = codeword == index ? previous : codeword;
+
+                int length = lengths[string];
+
+                // Spell out the string backwards, following the prefixes to its first character.
+                for (int position = length - 1; position >= 0; position--) {
+                    buffer[position] = suffixes[string];
+                    string = prefixes[string];
+                }
+
+                if (codeword == index) {
+                    buffer[length++] = buffer[0];
+                }
+
+                // If we can, place the previous string followed by the first
+                // character of this one into the next available slot on the table.
+                if (previous != LZWDictionary.NOT_FOUND && index < codewordCount) {
+                    prefixes[index] = previous;
+                    suffixes[index] = buffer[0];
+                    lengths[index] = lengths[previous] + 1;
+                    index++;
+                    additions++;
+                }
+
+                binaryWriteTool.writeBytes(buffer, 0, length);
+                dataLength += length;
+
+                previous = codeword;
+            }
+
+            codeword = binaryReadTool.readCodeword(getCodewordWidth(read++, maxCodewordWidth));
+            codewords++;
+        }
+
+        profiler.count(ProfilerCounters.DICTIONARY_ADDITIONS, additions);
+        profiler.count(ProfilerCounters.DICTIONARY_CLEARS, clears);
+        profiler.count(ProfilerCounters.CODEWORDS, codewords);
+
+        return dataLength;
+    }
+
+    /**
+     * Adds the strings of the preset dictionary (if there is one) into the dictionary.
+     *
+     * @param lzwDictionary The empty dictionary.
+     */
+    private void addPreset(LZWDictionary lzwDictionary) {
+        for (int codeword = FIRST_FREE; codeword < firstFree; codeword++) {
+            int entry = codeword - FIRST_FREE;
+            lzwDictionary.add(presetDictionary.getPrefix(entry), presetDictionary.getSuffix(entry) & 0xff, codeword);
+        }
+    }
+
+    /**
+     * Compresses a chunk of data in memory, with a dictionary of its own.
+     *
+     * @param data   The data to compress.
+     * @param length How many bytes of the array belong to the chunk.
+     * @return The compressed chunk.
+     * @throws IOException If we can't write the compressed chunk.
+     */
+    @Override
+    public byte[] encode(byte[] data, int length) throws IOException {
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(length / 2);
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(byteArrayOutputStream);
+
+        encode(new BinaryReadTool(new ByteArrayInputStream(data, 0, length)), binaryWriteTool);
+
+        binaryWriteTool.flushAndClose();
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Decompresses a chunk of data in memory.
+     *
+     * @param data   The compressed chunk.
+     * @param length How many bytes the chunk held before it was compressed.
+     * @return The decompressed data.
+     * @throws IOException If the chunk is corrupted.
+     */
+    @Override
+    public byte[] decode(byte[] data, int length) throws IOException {
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(length);
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(byteArrayOutputStream);
+
+        long decodedLength = decode(new BinaryReadTool(new ByteArrayInputStream(data)), binaryWriteTool);
+
+        if (decodedLength != length) {
+            throw new IOException("Corrupted file.");
+        }
+
+        binaryWriteTool.flushAndClose();
+
+        return byteArrayOutputStream.toByteArray();
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.gotonode.compress.algorithms.lzw;
+
+import java.util.Arrays;
+
+/**
+ * The dictionary used by the LZW compressor. Every string in the dictionary is some
+ * shorter string (its prefix, which is also in the dictionary) followed by one more
+ * character. So instead of whole strings, each entry is keyed by the codeword of its
+ * prefix and the character that follows it.
+ * <p>
+ * The entries are kept in a hash table with open addressing. The key and the codeword
+ * of an entry are packed into a single integer array, so no objects are created per
+ * entry, and finding whether the current string can be extended by one more character
+ * takes a single lookup (usually a single probe).
+ * <p>
+ * The single characters are not stored, as their codewords are the characters themselves.
+ * <p>
+ * Sources:
+ * • <a href="https://en.wikipedia.org/wiki/Open_addressing">Open addressing</a> (Wikipedia)
+ */
+class LZWDictionary {
+
+    // Returned when a string is not in the dictionary. Codewords are never negative.
+    static final int NOT_FOUND = -1;
+
+    // Marks an empty slot in the table. No key is ever negative.
+    private static final int EMPTY = -1;
+
+    // Used to spread the keys over the table (Knuth's multiplicative hashing).
+    private static final int HASH_MULTIPLIER = 0x9E3779B1;
+
+    // The key of each slot (the prefix codeword and the character packed together).
+    private final int[] keys;
+
+    // The codeword of each slot.
+    private final int[] codewords;
+
+    // Used to wrap the hash around the table, whose size is a power of two.
+    private final int mask;
+
+    // How many bits the hash is shifted down by, so that its top bits are used.
+    private final int shift;
+
+    /**
+     * Creates an empty dictionary. The table is made at least twice as big as the number
+     * of entries, so that lookups rarely need more than one probe.
+     *
+     * @param capacity How many entries the dictionary must be able to hold.
+     */
+    LZWDictionary(int capacity) {
+
+        int size = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) * 2;
+
+        this.keys = new int[size];
+        this.codewords = new int[size];
+        this.mask = size - 1;
+        this.shift = Integer.SIZE - Integer.numberOfTrailingZeros(size);
+
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Finds the codeword of a string, which is the given prefix followed by the character.
+     *
+     * @param prefix    The codeword of the prefix.
+     * @param character The character that follows the prefix.
+     * @return The codeword of the string, or {@link #NOT_FOUND} if it's not in the dictionary.
+     */
+    int get(int prefix, int character) {
+
+        int key = (prefix << 8) | character;
+
+        int slot = hash(key);
+
+        while (keys[slot] != EMPTY) {
+
+            if (keys[slot] == key) {
+                return codewords[slot];
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * Adds a string into the dictionary. The string must not be in the dictionary yet,
+     * and the dictionary must not be full.
+     *
+     * @param prefix    The codeword of the prefix.
+     * @param character The character that follows the prefix.
+     * @param codeword  The codeword given to the string.
+     */
+    void add(int prefix, int character, int codeword) {
+
+        int key = (prefix << 8) | character;
+
+        int slot = hash(key);
+
+        // Find the first empty slot, starting from where the key belongs.
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        codewords[slot] = codeword;
+    }
+
+    /**
+     * Removes every string from the dictionary.
+     */
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Finds the slot where a key belongs, if there are no collisions.
+     *
+     * @param key The key.
+     * @return The slot in the table.
+     */
+    private int hash(int key) {
+        return ((key * HASH_MULTIPLIER) >>> shift) & mask;
+    }
+}
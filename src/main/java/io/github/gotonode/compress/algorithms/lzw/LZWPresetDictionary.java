@@ -0,0 +1,335 @@
+package io.github.gotonode.compress.algorithms.lzw;
+
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.io.BinaryWriteTool;
+import io.github.gotonode.compress.main.Main;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A preset LZW dictionary, trained beforehand from sample data. Small files never get far
+ * enough for LZW to learn much from them, so they tend to get bigger instead of smaller.
+ * With a preset dictionary, the strings that are common in data like them are already
+ * in the dictionary when the compression starts.
+ * <p>
+ * The strings are stored just like in the dictionary itself: each one is the codeword of
+ * a shorter string followed by one character. The strings get the codewords right after
+ * the reserved ones, in order, and the dictionary grows from there as usual.
+ * <p>
+ * Each preset dictionary has an ID that is calculated from its strings. The ID is stored
+ * in the compressed file, so that the file can only be decompressed with the same preset.
+ */
+public final class LZWPresetDictionary {
+
+    // The first codeword given to a string in the dictionary.
+    private static final int FIRST_FREE = LZWCoder.CLEAR + 1;
+
+    // The most strings a preset can hold, as the dictionary can't hold any more.
+    public static final int MAX_SIZE = Main.CODEWORD_COUNT - FIRST_FREE;
+
+    // How many bits each prefix codeword takes in a saved preset.
+    private static final int PREFIX_WIDTH = Main.CODEWORD_WIDTH;
+
+    // Calculated from the strings. Never 0, which means "no preset" in the compressed file.
+    private final int id;
+
+    // The prefix codeword and the last character of each string.
+    private final int[] prefixes;
+    private final byte[] suffixes;
+
+    /**
+     * Creates a preset dictionary from its strings. Each prefix must be a character or a
+     * string that comes before it.
+     *
+     * @param prefixes The prefix codeword of each string.
+     * @param suffixes The last character of each string.
+     */
+    private LZWPresetDictionary(int[] prefixes, byte[] suffixes) {
+        this.prefixes = prefixes;
+        this.suffixes = suffixes;
+        this.id = calculateId();
+    }
+
+    /**
+     * Trains a preset dictionary from sample data. The sample is compressed with a full-size
+     * dictionary, counting how often each string is used. The most used strings (along with
+     * their prefixes, which they can't do without) make up the preset.
+     *
+     * @param sample     The sample data, preferably many examples of the data to be compressed.
+     * @param maxEntries How many strings the preset can hold at most.
+     * @return The preset dictionary.
+     * @throws IOException If we can't read the sample.
+     */
+    public static LZWPresetDictionary train(File sample, int maxEntries) throws IOException {
+
+        if (maxEntries < 0 || maxEntries > MAX_SIZE) {
+            throw new IllegalArgumentException("Invalid preset size: " + maxEntries);
+        }
+
+        int[] allPrefixes = new int[Main.CODEWORD_COUNT];
+        byte[] allSuffixes = new byte[Main.CODEWORD_COUNT];
+        long[] uses = new long[Main.CODEWORD_COUNT];
+
+        LZWDictionary lzwDictionary = new LZWDictionary(Main.CODEWORD_COUNT);
+
+        int nextCodeword = FIRST_FREE;
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(sample);
+
+        // The sample is closed even if it can't be read to the end.
+        try {
+            int prefix = LZWDictionary.NOT_FOUND;
+
+            if (binaryReadTool.streamHasData()) {
+                prefix = binaryReadTool.readChar();
+            }
+
+            while (binaryReadTool.streamHasData()) {
+
+                int character = binaryReadTool.readChar();
+
+                int codeword = lzwDictionary.get(prefix, character);
+
+                if (codeword != LZWDictionary.NOT_FOUND) {
+                    prefix = codeword;
+                    continue;
+                }
+
+                uses[prefix]++;
+
+                if (nextCodeword < Main.CODEWORD_COUNT) {
+                    lzwDictionary.add(prefix, character, nextCodeword);
+                    allPrefixes[nextCodeword] = prefix;
+                    allSuffixes[nextCodeword] = (byte) character;
+                    nextCodeword++;
+                }
+
+                prefix = character;
+            }
+        } finally {
+            binaryReadTool.close();
+        }
+
+        boolean[] selected = select(allPrefixes, uses, nextCodeword, maxEntries);
+
+        return renumber(allPrefixes, allSuffixes, selected, nextCodeword);
+    }
+
+    /**
+     * Picks the most used strings, along with all of their prefixes.
+     *
+     * @param prefixes   The prefix codeword of each string.
+     * @param uses       How many times each codeword was used.
+     * @param count      The first codeword that wasn't given to any string.
+     * @param maxEntries How many strings can be picked at most.
+     * @return Whether each codeword was picked.
+     */
+    private static boolean[] select(int[] prefixes, long[] uses, int count, int maxEntries) {
+
+        boolean[] selected = new boolean[count];
+
+        // The codewords of the strings, most used first.
+        long[] keys = new long[count - FIRST_FREE];
+
+        for (int codeword = FIRST_FREE; codeword < count; codeword++) {
+            keys[codeword - FIRST_FREE] = (uses[codeword] << Integer.SIZE) | (Main.CODEWORD_COUNT - codeword);
+        }
+
+        Arrays.sort(keys);
+
+        int entries = 0;
+
+        for (int i = keys.length - 1; i >= 0 && entries < maxEntries; i--) {
+
+            int codeword = Main.CODEWORD_COUNT - (int) (keys[i] & 0xffffffffL);
+
+            // How many of the string's prefixes (and the string itself) haven't been picked yet.
+            int missing = 0;
+
+            for (int string = codeword; string >= FIRST_FREE && !selected[string]; string = prefixes[string]) {
+                missing++;
+            }
+
+            if (entries + missing > maxEntries) {
+                continue;
+            }
+
+            for (int string = codeword; string >= FIRST_FREE && !selected[string]; string = prefixes[string]) {
+                selected[string] = true;
+            }
+
+            entries += missing;
+        }
+
+        return selected;
+    }
+
+    /**
+     * Gives the picked strings new codewords, in their original order. A prefix always
+     * has a smaller codeword than the strings built on it, so it also comes first here.
+     *
+     * @param prefixes The prefix codeword of each string.
+     * @param suffixes The last character of each string.
+     * @param selected Whether each codeword was picked.
+     * @param count    The first codeword that wasn't given to any string.
+     * @return The preset dictionary.
+     */
+    private static LZWPresetDictionary renumber(int[] prefixes, byte[] suffixes, boolean[] selected, int count) {
+
+        int[] newCodewords = new int[count];
+
+        for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+            newCodewords[character] = character;
+        }
+
+        int entries = 0;
+
+        for (int codeword = FIRST_FREE; codeword < count; codeword++) {
+            if (selected[codeword]) {
+                newCodewords[codeword] = FIRST_FREE + entries++;
+            }
+        }
+
+        int[] presetPrefixes = new int[entries];
+        byte[] presetSuffixes = new byte[entries];
+
+        for (int codeword = FIRST_FREE; codeword < count; codeword++) {
+            if (selected[codeword]) {
+                int entry = newCodewords[codeword] - FIRST_FREE;
+                presetPrefixes[entry] = newCodewords[prefixes[codeword]];
+                presetSuffixes[entry] = suffixes[codeword];
+            }
+        }
+
+        return new LZWPresetDictionary(presetPrefixes, presetSuffixes);
+    }
+
+    /**
+     * Reads a preset dictionary that has been saved with {@link #save(File)}.
+     *
+     * @param file The file to read.
+     * @return The preset dictionary.
+     * @throws IOException If we can't read the file, or if it's not a valid preset.
+     */
+    public static LZWPresetDictionary load(File file) throws IOException {
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(file);
+
+        // The file is closed even if it turns out to be corrupted.
+        try {
+            if (binaryReadTool.readInt() != Main.LZW_PRESET_CODE) {
+                throw new IOException("Corrupted file.");
+            }
+
+            int entries = binaryReadTool.readInt();
+
+            if (entries < 0 || entries > MAX_SIZE) {
+                throw new IOException("Corrupted file.");
+            }
+
+            int[] prefixes = new int[entries];
+            byte[] suffixes = new byte[entries];
+
+            for (int entry = 0; entry < entries; entry++) {
+
+                prefixes[entry] = (int) binaryReadTool.readBits(PREFIX_WIDTH);
+
+                suffixes[entry] = (byte) binaryReadTool.readChar();
+
+                // A string can only be built on a character or a string before it.
+                if (prefixes[entry] == LZWCoder.END_OF_DATA || prefixes[entry] == LZWCoder.CLEAR
+                        || prefixes[entry] >= FIRST_FREE + entry) {
+                    throw new IOException("Corrupted file.");
+                }
+            }
+
+            return new LZWPresetDictionary(prefixes, suffixes);
+        } finally {
+            binaryReadTool.close();
+        }
+    }
+
+    /**
+     * Saves the preset dictionary into a file.
+     *
+     * @param file The file to write to.
+     * @throws IOException If we can't write to the file.
+     */
+    public void save(File file) throws IOException {
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(file);
+
+        boolean saved = false;
+
+        // Just like the compressed files, a preset that couldn't be saved is cut short and closed.
+        try {
+            binaryWriteTool.writeInt(Main.LZW_PRESET_CODE);
+            binaryWriteTool.writeInt(prefixes.length);
+
+            for (int entry = 0; entry < prefixes.length; entry++) {
+                binaryWriteTool.writeBits(prefixes[entry], PREFIX_WIDTH);
+                binaryWriteTool.write(suffixes[entry] & 0xff);
+            }
+
+            binaryWriteTool.flushAndClose();
+
+            saved = true;
+        } finally {
+            if (!saved) {
+                binaryWriteTool.closeAfterFailure();
+            }
+        }
+    }
+
+    /**
+     * Calculates the ID from the strings, with a CRC-32 checksum.
+     *
+     * @return The ID, which is never 0.
+     */
+    private int calculateId() {
+
+        CRC32 crc32 = new CRC32();
+
+        for (int entry = 0; entry < prefixes.length; entry++) {
+            crc32.update(prefixes[entry] >>> Main.BITS_IN_A_BYTE);
+            crc32.update(prefixes[entry]);
+            crc32.update(suffixes[entry]);
+        }
+
+        int checksum = (int) crc32.getValue();
+
+        return checksum == 0 ? 1 : checksum;
+    }
+
+    /**
+     * Tells how long the codewords must be allowed to get, so that all of the strings
+     * of the preset fit into the dictionary (with at least one codeword to spare).
+     *
+     * @return The shortest usable longest codeword width in bits.
+     */
+    public int getMinCodewordWidth() {
+        int biggestCodeword = FIRST_FREE + prefixes.length;
+        return Math.max(Main.CODEWORD_MIN_WIDTH, Integer.SIZE - Integer.numberOfLeadingZeros(biggestCodeword));
+    }
+
+    // Getters are self-explanatory, and do not get their own Javadoc comments.
+
+    public int getId() {
+        return id;
+    }
+
+    public int getSize() {
+        return prefixes.length;
+    }
+
+    int getPrefix(int entry) {
+        return prefixes[entry];
+    }
+
+    byte getSuffix(int entry) {
+        return suffixes[entry];
+    }
+}
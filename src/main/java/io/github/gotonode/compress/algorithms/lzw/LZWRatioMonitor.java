@@ -0,0 +1,95 @@
+package io.github.gotonode.compress.algorithms.lzw;
+
+/**
+ * Watches how well LZW compresses once its dictionary is full, and tells when the
+ * dictionary should be emptied.
+ * <p>
+ * A full dictionary no longer learns anything new. If the data changes along the way
+ * (like long log files do), the strings in the dictionary stop matching the data and
+ * the compression gets worse. Emptying the dictionary lets it learn the new data.
+ * <p>
+ * The ratio is measured over windows of input. The best window seen since the
+ * dictionary filled up is remembered, and once a window does clearly worse than that,
+ * the dictionary should be emptied. Small changes from window to window are ignored,
+ * as emptying the dictionary has a cost of its own.
+ */
+class LZWRatioMonitor {
+
+    // A window must take this many eighths of the bits (per byte) of the best window
+    // before the dictionary is emptied. 9 eighths means 12.5 % worse.
+    private static final int TOLERANCE_EIGHTHS = 9;
+
+    // How many bytes of input each window holds.
+    private final long windowSize;
+
+    // Where the current window started, or -1 if it hasn't started yet.
+    private long windowInput = -1;
+    private long windowOutput;
+
+    // The input bytes and output bits of the best window so far. Zero if there's none.
+    private long bestInput;
+    private long bestOutput;
+
+    /**
+     * Creates a new monitor.
+     *
+     * @param windowSize How many bytes of input each window holds.
+     */
+    LZWRatioMonitor(long windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Checks whether the compression has gotten worse. Called after each codeword while
+     * the dictionary is full. The first call starts the first window.
+     *
+     * @param input  How many bytes of input have been read in total.
+     * @param output How many bits of output have been written in total.
+     * @return True if the dictionary should be emptied, false otherwise.
+     */
+    boolean isDegraded(long input, long output) {
+
+        if (windowInput < 0) {
+            startWindow(input, output);
+            return false;
+        }
+
+        long currentInput = input - windowInput;
+        long currentOutput = output - windowOutput;
+
+        if (currentInput < windowSize) {
+            return false;
+        }
+
+        startWindow(input, output);
+
+        // Fewer bits per byte than the best window, so this is the new best one.
+        if (bestInput == 0 || currentOutput * bestInput < bestOutput * currentInput) {
+            bestInput = currentInput;
+            bestOutput = currentOutput;
+            return false;
+        }
+
+        if (currentOutput * bestInput * 8 <= bestOutput * currentInput * TOLERANCE_EIGHTHS) {
+            return false;
+        }
+
+        // The dictionary is emptied, so everything starts over once it's full again.
+        windowInput = -1;
+        bestInput = 0;
+        bestOutput = 0;
+
+        return true;
+    }
+
+    /**
+     * Starts a new window from the current position.
+     *
+     * @param input  How many bytes of input have been read in total.
+     * @param output How many bits of output have been written in total.
+     */
+    private void startWindow(long input, long output) {
+        windowInput = input;
+        windowOutput = output;
+    }
+}
@@ -2,10 +2,13 @@ package io.github.gotonode.compress.app;
 
 import io.github.gotonode.compress.benchmarking.Benchmark;
 import io.github.gotonode.compress.benchmarking.BenchmarkResult;
+import io.github.gotonode.compress.algorithms.CompressAlgorithm;
 import io.github.gotonode.compress.algorithms.huffman.Huffman;
 import io.github.gotonode.compress.algorithms.lzw.LZW;
+import io.github.gotonode.compress.algorithms.lzw.LZWPresetDictionary;
 import io.github.gotonode.compress.enums.Algorithms;
 import io.github.gotonode.compress.enums.Commands;
+import io.github.gotonode.compress.enums.HuffmanModes;
 import io.github.gotonode.compress.io.BinaryReadTool;
 import io.github.gotonode.compress.io.IO;
 import io.github.gotonode.compress.main.Main;
@@ -18,8 +21,9 @@ import java.io.IOException;
  * This is a non-static class which acts as the "engine" for the project. It is created and
  * called in the Main-class.
  * <p>
- * This is not tested as it simply asks the user for commands and executes them. Unit testing
- * is done directly without referencing this class.
+ * This is mostly not tested as it simply asks the user for commands and executes them. Unit testing
+ * is done directly without referencing this class, except for the preset dictionary commands, which
+ * are run from start to finish with scripted answers.
  */
 public class App {
 
@@ -103,6 +107,11 @@ public class App {
                     processDecompression();
                     break;
 
+                case TRAIN_PRESET:
+                    // User wants a preset dictionary for compressing small files with LZW.
+                    trainPresetDictionary();
+                    break;
+
                 case COMMANDS:
                     // User has forgotten the commands and asks for them again.
                     uiController.printInstructions();
@@ -151,24 +160,35 @@ public class App {
 
         // At this point, we have an input file we can read, and an output file we can write to.
 
-        long current = System.currentTimeMillis();
-
         // This method was called with the chosen algorithm, to be used for compression.
+        // Its options are asked before the clock starts.
+        CompressAlgorithm compressAlgorithm;
+
         switch (algorithm) {
 
             case HUFFMAN:
-                Huffman huffman = new Huffman(sourceFile, targetFile);
-                huffman.compress();
+                compressAlgorithm = createHuffman(sourceFile, targetFile);
                 break;
             case LZW:
-                LZW lzw = new LZW(sourceFile, targetFile);
-                lzw.compress();
+                compressAlgorithm = createLZW(sourceFile, targetFile);
                 break;
 
             default:
                 throw new IllegalArgumentException();
         }
 
+        // The options couldn't be used, and the reason has already been printed.
+        if (compressAlgorithm == null) {
+            return;
+        }
+
+        long current = System.currentTimeMillis();
+
+        // If the compression fails, the error has already been printed.
+        if (!compressAlgorithm.compress()) {
+            return;
+        }
+
         long next = System.currentTimeMillis();
 
         long time = next - current;
@@ -193,6 +213,154 @@ public class App {
         uiController.printOperationTime(time);
     }
 
+    /**
+     * Creates a Huffman coder, and asks the user for the mode and the options that go with it.
+     *
+     * @param sourceFile The file to compress.
+     * @param targetFile Where to write the compressed file.
+     * @return The Huffman coder, ready to compress.
+     */
+    private Huffman createHuffman(File sourceFile, File targetFile) {
+
+        Huffman huffman = new Huffman(sourceFile, targetFile);
+
+        HuffmanModes mode = uiController.askForHuffmanMode();
+
+        huffman.setMode(mode);
+
+        // The adaptive mode builds its codes as it goes, so there's nothing more to choose.
+        if (mode == HuffmanModes.ADAPTIVE) {
+            return huffman;
+        }
+
+        if (mode == HuffmanModes.STATIC) {
+            huffman.setSampling(uiController.askForYesOrNo("Estimate the weights from samples of the file?"));
+        }
+
+        if (mode == HuffmanModes.BLOCK || mode == HuffmanModes.INTERLEAVED) {
+
+            int kilobytes = uiController.askForNumber("Block size in kilobytes",
+                    1, Main.MAX_BLOCK_SIZE / Main.BYTES_IN_A_KILOBYTE,
+                    Main.HUFFMAN_BLOCK_SIZE / Main.BYTES_IN_A_KILOBYTE);
+
+            huffman.setBlockSize(kilobytes * Main.BYTES_IN_A_KILOBYTE);
+        }
+
+        huffman.setMaxCodeLength(uiController.askForNumberOrZero("Longest code length in bits, or 0 for no limit",
+                Main.BITS_IN_A_BYTE, Long.SIZE - 1));
+
+        return huffman;
+    }
+
+    /**
+     * Creates an LZW coder, and asks the user for its options.
+     *
+     * @param sourceFile The file to compress.
+     * @param targetFile Where to write the compressed file.
+     * @return The LZW coder, ready to compress, or null if the preset dictionary couldn't be loaded.
+     */
+    private LZW createLZW(File sourceFile, File targetFile) {
+
+        LZWPresetDictionary presetDictionary = null;
+
+        // The preset is asked first, as the codewords must be long enough for its strings.
+        int minCodewordWidth = Main.CODEWORD_MIN_WIDTH;
+
+        String presetPath = uiController.askForPresetFilePath(true);
+
+        if (!presetPath.isEmpty()) {
+
+            presetDictionary = loadPresetDictionary(presetPath);
+
+            if (presetDictionary == null) {
+                return null;
+            }
+
+            minCodewordWidth = presetDictionary.getMinCodewordWidth();
+        }
+
+        LZW lzw = new LZW(sourceFile, targetFile);
+
+        lzw.setPresetDictionary(presetDictionary);
+
+        lzw.setMaxCodewordWidth(uiController.askForNumber("Longest codeword in bits",
+                minCodewordWidth, Main.CODEWORD_WIDTH, Main.CODEWORD_WIDTH));
+
+        int kilobytes = uiController.askForNumberOrZero("Chunk size in kilobytes, or 0 for a single stream",
+                1, Main.MAX_BLOCK_SIZE / Main.BYTES_IN_A_KILOBYTE);
+
+        lzw.setChunkSize(kilobytes * Main.BYTES_IN_A_KILOBYTE);
+
+        return lzw;
+    }
+
+    /**
+     * Loads a preset dictionary for LZW from the given file.
+     *
+     * @param path The path to the preset dictionary file.
+     * @return The preset dictionary, or null if it couldn't be loaded (the reason has been printed).
+     */
+    private LZWPresetDictionary loadPresetDictionary(String path) {
+
+        File presetFile = new File(path);
+
+        if (!presetFile.exists() || !presetFile.canRead()) {
+            uiController.printFileError();
+            return null;
+        }
+
+        try {
+            return LZWPresetDictionary.load(presetFile);
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+            return null;
+        }
+    }
+
+    /**
+     * Asks the user for a sample file, then trains a preset dictionary for LZW from it and saves
+     * the preset into the output location. The preset can then be chosen when compressing with LZW.
+     */
+    private void trainPresetDictionary() {
+
+        uiController.printTrainingPreset();
+
+        // What file to learn the strings from (is never modified).
+        File sampleFile = io.askForSourceFile(uiController);
+
+        if (sampleFile == null) {
+            uiController.printFileError();
+            return;
+        }
+
+        int size = uiController.askForNumber("How many strings the preset holds at most",
+                1, LZWPresetDictionary.MAX_SIZE, Main.LZW_PRESET_SIZE);
+
+        // Where to save the preset dictionary.
+        File targetFile = io.askForTargetFile(uiController);
+
+        if (sampleFile.equals(targetFile)) {
+            uiController.printFilesCannotBeTheSame();
+            return;
+        }
+
+        if (targetFile.exists() && !targetFile.canWrite()) {
+            uiController.printCannotWrite();
+            return;
+        }
+
+        try {
+            LZWPresetDictionary presetDictionary = LZWPresetDictionary.train(sampleFile, size);
+
+            presetDictionary.save(targetFile);
+
+            uiController.printPresetSaved(presetDictionary.getId(), presetDictionary.getSize(), targetFile.getName());
+
+        } catch (IOException ex) {
+            UiController.printErrorMessage(ex);
+        }
+    }
+
     /**
      * Asks the user for the input and output files, then decompresses the input file into the output location. The
      * used algorithm is determined automatically.
@@ -211,7 +379,8 @@ public class App {
         // The first integer of a compressed file is used to identify the file
         // as either Huffman- or LZW-coded. Incorrect integer values result in an error.
         int algorithmCode = 0;
-        int decompressedDataLength = 0;
+        long decompressedDataLength = 0;
+        int presetId = 0;
 
         try {
             BinaryReadTool binaryReadTool = new BinaryReadTool(sourceFile);
@@ -220,7 +389,14 @@ public class App {
             algorithmCode = binaryReadTool.readInt();
 
             // How big was the original file.
-            decompressedDataLength = binaryReadTool.readInt();
+            decompressedDataLength = binaryReadTool.readLong();
+
+            // LZW files go on with the longest codeword width, and the ID of the preset
+            // dictionary they were compressed with (0 for none).
+            if (LZW.isLZWCode(algorithmCode)) {
+                binaryReadTool.readChar();
+                presetId = binaryReadTool.readInt();
+            }
 
             binaryReadTool.close();
 
@@ -231,10 +407,16 @@ public class App {
 
         Algorithms algorithm;
 
+        // Files from older versions of this app have headers we can no longer read.
+        if (algorithmCode == Main.HUFFMAN_OLD_CODE || algorithmCode == Main.LZW_OLD_CODE) {
+            uiController.printUnsupportedVersion();
+            return;
+        }
+
         // We compare the code we got from the file with the predefined one's.
-        if (algorithmCode == Main.LZW_CODE) {
+        if (LZW.isLZWCode(algorithmCode)) {
             algorithm = Algorithms.LZW;
-        } else if (algorithmCode == Main.HUFFMAN_CODE) {
+        } else if (Huffman.isHuffmanCode(algorithmCode)) {
             algorithm = Algorithms.HUFFMAN;
         } else {
 
@@ -251,6 +433,25 @@ public class App {
         // to be writing for decompression.
         uiController.printDecompressedDataLength(decompressedDataLength);
 
+        LZWPresetDictionary presetDictionary = null;
+
+        // The file can only be decompressed with the same preset it was compressed with.
+        if (presetId != 0) {
+
+            uiController.printPresetNeeded(presetId);
+
+            presetDictionary = loadPresetDictionary(uiController.askForPresetFilePath(false));
+
+            if (presetDictionary == null) {
+                return;
+            }
+
+            if (presetDictionary.getId() != presetId) {
+                uiController.printWrongPreset(presetDictionary.getId());
+                return;
+            }
+        }
+
         // Where to save the decompressed file.
         File targetFile = io.askForTargetFile(uiController);
 
@@ -268,18 +469,18 @@ public class App {
 
         // At this point, we have an input file we can read, and an output file we can write to.
 
-        long current = System.currentTimeMillis();
-
         // This method was called with the chosen algorithm.
+        CompressAlgorithm compressAlgorithm;
+
         switch (algorithm) {
 
             case HUFFMAN:
-                Huffman huffman = new Huffman(sourceFile, targetFile);
-                huffman.decompress();
+                compressAlgorithm = new Huffman(sourceFile, targetFile);
                 break;
             case LZW:
                 LZW lzw = new LZW(sourceFile, targetFile);
-                lzw.decompress();
+                lzw.setPresetDictionary(presetDictionary);
+                compressAlgorithm = lzw;
                 break;
             default:
 
@@ -289,6 +490,13 @@ public class App {
                 throw new IllegalArgumentException();
         }
 
+        long current = System.currentTimeMillis();
+
+        // If the decompression fails, the error has already been printed.
+        if (!compressAlgorithm.decompress()) {
+            return;
+        }
+
         long next = System.currentTimeMillis();
 
         long time = next - current;
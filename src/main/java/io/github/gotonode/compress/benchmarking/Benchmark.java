@@ -4,11 +4,13 @@ import io.github.gotonode.compress.algorithms.CompressAlgorithm;
 import io.github.gotonode.compress.algorithms.huffman.Huffman;
 import io.github.gotonode.compress.algorithms.lzw.LZW;
 import io.github.gotonode.compress.enums.Algorithms;
+import io.github.gotonode.compress.utils.PhaseProfiler;
 
 import java.io.File;
 
 /**
- * Used to run a benchmark on the chosen algorithm.
+ * Used to run a benchmark on the chosen algorithm. Besides the total times, the phases
+ * of compressing and decompressing are timed with a {@link PhaseProfiler} each.
  */
 public final class Benchmark {
 
@@ -44,6 +46,9 @@ public final class Benchmark {
             compressAlgorithm = new LZW(sourceFile, compressedFile);
         }
 
+        PhaseProfiler compressionProfile = new PhaseProfiler();
+        compressAlgorithm.setProfiler(compressionProfile);
+
         start = System.currentTimeMillis();
 
         // Measure how long it takes to compress this file.
@@ -59,6 +64,9 @@ public final class Benchmark {
             compressAlgorithm = new LZW(compressedFile, decompressedFile);
         }
 
+        PhaseProfiler decompressionProfile = new PhaseProfiler();
+        compressAlgorithm.setProfiler(decompressionProfile);
+
         start = System.currentTimeMillis();
 
         // Measure how long it takes to decompress this file.
@@ -72,11 +80,25 @@ public final class Benchmark {
         long compressedSize = compressedFile.length();
 
         // Delete the files used in benchmarking. Preserve the original.
-        compressedFile.delete();
-        decompressedFile.delete();
+        deleteFile(compressedFile);
+        deleteFile(decompressedFile);
 
         output = new BenchmarkResult(compressionTime, decompressionTime, compressedSize);
+        output.setProfiles(compressionProfile, decompressionProfile);
 
         return output;
     }
+
+    /**
+     * Deletes a file used in benchmarking. If the file can't be deleted right away (for an
+     * example, because it's still open or mapped into memory on Windows), it's deleted
+     * when the app exits instead.
+     *
+     * @param file The file to delete.
+     */
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            file.deleteOnExit();
+        }
+    }
 }
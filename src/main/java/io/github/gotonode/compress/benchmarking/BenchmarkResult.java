@@ -1,7 +1,10 @@
 package io.github.gotonode.compress.benchmarking;
 
+import io.github.gotonode.compress.utils.PhaseProfiler;
+
 /**
- * Holds the results from a benchmarking run.
+ * Holds the results from a benchmarking run, along with the time spent in each phase
+ * of compressing and decompressing.
  */
 public class BenchmarkResult {
 
@@ -9,6 +12,9 @@ public class BenchmarkResult {
     private long decompressionTime;
     private long compressedSize;
 
+    private PhaseProfiler compressionProfile = PhaseProfiler.DISABLED;
+    private PhaseProfiler decompressionProfile = PhaseProfiler.DISABLED;
+
     /**
      * Creates a new object that holds the benchmarking results.
      *
@@ -22,6 +28,17 @@ public class BenchmarkResult {
         this.compressedSize = compressedSize;
     }
 
+    /**
+     * Sets the profilers that were used during the benchmark.
+     *
+     * @param compressionProfile   The profiler used while compressing.
+     * @param decompressionProfile The profiler used while decompressing.
+     */
+    void setProfiles(PhaseProfiler compressionProfile, PhaseProfiler decompressionProfile) {
+        this.compressionProfile = compressionProfile;
+        this.decompressionProfile = decompressionProfile;
+    }
+
     public long getCompressionTime() {
         return compressionTime;
     }
@@ -33,4 +50,12 @@ public class BenchmarkResult {
     public long getCompressedSize() {
         return compressedSize;
     }
+
+    public PhaseProfiler getCompressionProfile() {
+        return compressionProfile;
+    }
+
+    public PhaseProfiler getDecompressionProfile() {
+        return decompressionProfile;
+    }
 }
@@ -5,7 +5,8 @@ package io.github.gotonode.compress.enums;
  */
 public enum Commands {
 
-    EXIT('E'), COMPRESS_HUFFMAN('H'), COMPRESS_LZW('L'), BENCHMARK('B'), DECOMPRESS('D'), COMMANDS('X');
+    EXIT('E'), COMPRESS_HUFFMAN('H'), COMPRESS_LZW('L'), BENCHMARK('B'), DECOMPRESS('D'), TRAIN_PRESET('P'),
+    COMMANDS('X');
 
     private final char command;
 
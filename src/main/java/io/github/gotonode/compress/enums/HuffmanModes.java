@@ -0,0 +1,41 @@
+package io.github.gotonode.compress.enums;
+
+/**
+ * The different modes Huffman coding can be used in. Each mode produces a file of its
+ * own format, and the mode is detected automatically when decompressing.
+ */
+public enum HuffmanModes {
+
+    // Reads the data twice: first to count the weights, then to write the codes.
+    STATIC('S', "Static"),
+
+    // Reads the data only once, updating the codes as it goes.
+    ADAPTIVE('A', "Adaptive"),
+
+    // Splits the data into blocks, each with codes of their own, and codes the blocks in parallel.
+    BLOCK('B', "Block"),
+
+    // Like the block mode, but each block is split into 4 streams that can be decoded side by side.
+    INTERLEAVED('I', "Interleaved"),
+
+    // Chooses the codes of each character based on the character before it.
+    ORDER1('O', "Order-1");
+
+    // The character the user chooses the mode with.
+    private final char command;
+
+    private final String name;
+
+    HuffmanModes(char command, String name) {
+        this.command = command;
+        this.name = name;
+    }
+
+    public char getCommand() {
+        return this.command;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.gotonode.compress.enums;
+
+/**
+ * The operations that a profiler can count. These happen far too often to be timed one
+ * by one, so they're only counted.
+ */
+public enum ProfilerCounters {
+
+    // Looking up a string from the LZW dictionary.
+    DICTIONARY_LOOKUPS("Dictionary lookups"),
+
+    // Adding a string into the LZW dictionary (or its table, when decompressing).
+    DICTIONARY_ADDITIONS("Dictionary additions"),
+
+    // Emptying the LZW dictionary.
+    DICTIONARY_CLEARS("Dictionary clears"),
+
+    // Writing or reading an LZW codeword.
+    CODEWORDS("Codewords"),
+
+    // Coding a block (Huffman) or a chunk (LZW).
+    BLOCKS("Blocks");
+
+    private final String name;
+
+    ProfilerCounters(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
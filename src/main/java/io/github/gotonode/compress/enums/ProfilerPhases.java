@@ -0,0 +1,33 @@
+package io.github.gotonode.compress.enums;
+
+/**
+ * The phases of compressing or decompressing that a profiler can time. Not every
+ * algorithm or mode goes through every phase.
+ */
+public enum ProfilerPhases {
+
+    // Counting the weights of the characters (Huffman).
+    HISTOGRAM("Histogram"),
+
+    // Building the codes from the weights, or reading them from the file (Huffman).
+    TREE_BUILD("Tree build"),
+
+    // Turning the data into codes or codewords.
+    ENCODE("Encode"),
+
+    // Turning the codes or codewords back into data.
+    DECODE("Decode"),
+
+    // Reading and writing the headers, copying stored data and flushing the output.
+    IO("I/O");
+
+    private final String name;
+
+    ProfilerPhases(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+}
@@ -2,10 +2,13 @@ package io.github.gotonode.compress.io;
 
 import io.github.gotonode.compress.main.Main;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * This binary reading tool is used by both Huffman and LZW to read in
@@ -13,49 +16,316 @@ import java.io.IOException;
  * <p>
  * Helper methods have been created to read the specified amount of
  * data at once (1 bit, 32 bits, 1 byte etc).
+ * <p>
+ * The bytes are read from the stream into a large byte buffer, and from there into a
+ * 64-bit window that the bits are taken from. Table-driven decoders look at the next
+ * bits with {@link #peekBits(int)} and move past the ones they used with
+ * {@link #skipBits(int)}, while {@link #readBits(int)} does both at once.
+ * <p>
+ * Large files can instead be mapped into memory (read-only), in which case the window
+ * is topped up straight from the mapped file. Files bigger than a single mapping can
+ * be (2 GB) are mapped one segment at a time. Reading a mapped file again from the
+ * start (as the static mode of Huffman does) costs no extra reads, and the pages are
+ * shared with everyone else who reads the same file. Mapping is opt-in (see
+ * {@link Main#MEMORY_MAPPED_INPUT}), as Java only releases the mapped memory once it's
+ * garbage collected, and Windows won't let the file be deleted before that.
  */
 public class BinaryReadTool {
 
-    private BufferedInputStream bufferedInputStream;
-    private int slots; // How much space is usable.
-    private int bitBuffer; // Bits in the buffer.
+    // The window can hold a whole long, but we only top it up while there
+    // is room for another full byte.
+    private static final int WINDOW_REFILL_LIMIT = Long.SIZE - Main.BITS_IN_A_BYTE;
+
+    // Used when there are no bytes read ahead.
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private InputStream inputStream; // Used unless the file is mapped.
+    private byte[] buffer; // Bytes read ahead from the stream, unless the file is mapped.
+
+    private FileChannel fileChannel; // Used if the file is mapped.
+    private ByteBuffer firstSegment; // Kept, so that the file can be read again without mapping it again.
+    private long segmentStart; // Where in the file the current segment starts.
+    private final int segmentSize; // How many bytes are mapped at once. Zero if the file isn't mapped.
+
+    private ByteBuffer source = EMPTY; // The bytes to move into the window next, from the buffer or the mapped file.
+    private long window; // Bits read ahead from the stream, the oldest bit is the highest one.
+    private int bitsInWindow; // How many of the lowest bits in the window are usable.
+    private boolean endOfStream; // Set once the stream has no more bytes to give.
     private File file;
 
     /**
-     * Instantiates this object.
+     * Instantiates this object. Files of at least {@link Main#MAPPED_INPUT_MIN_SIZE}
+     * bytes are mapped into memory, if {@link Main#MEMORY_MAPPED_INPUT} is set.
      *
      * @param file The file we'll be reading from. This is stored.
      * @throws IOException If the file is not found (amongst other things).
      */
     public BinaryReadTool(File file) throws IOException {
+        this(file, Main.MEMORY_MAPPED_INPUT && file.length() >= Main.MAPPED_INPUT_MIN_SIZE);
+    }
+
+    /**
+     * Instantiates this object, choosing whether the file is mapped into memory.
+     *
+     * @param file         The file we'll be reading from. This is stored.
+     * @param memoryMapped True to map the file into memory, false to read it as a stream.
+     * @throws IOException If the file is not found (amongst other things).
+     */
+    public BinaryReadTool(File file, boolean memoryMapped) throws IOException {
+        this(file, memoryMapped ? Main.MAPPED_SEGMENT_SIZE : 0);
+    }
+
+    /**
+     * Instantiates this object with the given size of the mapped segments.
+     *
+     * @param file        The file we'll be reading from. This is stored.
+     * @param segmentSize How many bytes are mapped at once, or 0 to read the file as a stream.
+     * @throws IOException If the file is not found (amongst other things).
+     */
+    BinaryReadTool(File file, int segmentSize) throws IOException {
         this.file = file;
+        this.segmentSize = segmentSize;
         reset();
     }
 
     /**
-     * Starts from the beginning, and resets the streams.
+     * Instantiates this object so that it reads from an already opened stream, such
+     * as data held in memory. A reader created this way can't be reset.
      *
-     * @throws IOException On IO error.
+     * @param inputStream The stream we'll be reading from.
+     * @throws IOException If we can't read from the stream.
+     */
+    public BinaryReadTool(InputStream inputStream) throws IOException {
+        this.inputStream = inputStream;
+        this.buffer = new byte[Main.IO_BUFFER_SIZE];
+        this.segmentSize = 0;
+        fill();
+    }
+
+    /**
+     * Starts from the beginning, and resets the streams. A mapped file is
+     * read again from the memory it was mapped to.
+     *
+     * @throws IOException On IO error, or if this reader wasn't created from a file.
      */
     public void reset() throws IOException {
-        slots = 0;
-        bitBuffer = 0;
 
-        // Can this be done without creating the objects anew?
-        FileInputStream fileInputStream = new FileInputStream(file);
-        bufferedInputStream = new BufferedInputStream(fileInputStream);
+        if (file == null) {
+            throw new IOException("The stream can't be reset.");
+        }
+
+        window = 0;
+        bitsInWindow = 0;
+        endOfStream = false;
+
+        if (segmentSize > 0) {
+
+            if (fileChannel == null) {
+                fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            }
+
+            // The first segment is mapped again by refill(), unless it's still around.
+            segmentStart = 0;
+            source = firstSegment == null ? EMPTY : firstSegment.duplicate();
+
+        } else {
+
+            if (inputStream != null) {
+                inputStream.close();
+            }
+
+            if (buffer == null) {
+                buffer = new byte[Main.IO_BUFFER_SIZE];
+            }
+
+            inputStream = new FileInputStream(file);
+            source = EMPTY;
+        }
 
         fill();
     }
 
     /**
-     * Fills the buffer.
+     * Fills the window with whole bytes from the stream, until either the
+     * window is full or the stream runs out of data.
      *
      * @throws IOException If we can't read from the stream.
      */
     private void fill() throws IOException {
-        bitBuffer = bufferedInputStream.read();
-        slots = Main.BITS_IN_A_BYTE;
+
+        if (bitsInWindow > WINDOW_REFILL_LIMIT) {
+            return;
+        }
+
+        // Usually there are enough bytes left to take all that fit with a single read.
+        if (source.remaining() >= Long.BYTES) {
+
+            int bytes = (Long.SIZE - bitsInWindow) / Main.BITS_IN_A_BYTE;
+            int bits = bytes * Main.BITS_IN_A_BYTE;
+
+            long next = source.getLong(source.position());
+            source.position(source.position() + bytes);
+
+            window = bits == Long.SIZE ? next : (window << bits) | (next >>> (Long.SIZE - bits));
+            bitsInWindow += bits;
+
+            return;
+        }
+
+        while (bitsInWindow <= WINDOW_REFILL_LIMIT) {
+
+            if (!source.hasRemaining() && !refill()) {
+                return;
+            }
+
+            window = (window << Main.BITS_IN_A_BYTE) | (source.get() & 0xff);
+            bitsInWindow += Main.BITS_IN_A_BYTE;
+        }
+    }
+
+    /**
+     * Reads the next bytes from the stream into the buffer, as many as the stream
+     * gives at once, or maps the next segment of the file. The bytes read ahead
+     * must have been used up.
+     *
+     * @return True if there were bytes to read, false if the stream has ended.
+     * @throws IOException If we can't read from the stream.
+     */
+    private boolean refill() throws IOException {
+
+        if (endOfStream) {
+            return false;
+        }
+
+        if (segmentSize > 0) {
+            return mapNextSegment();
+        }
+
+        int count = inputStream.read(buffer, 0, buffer.length);
+
+        if (count <= 0) {
+            // A stream only returns 0 if asked for 0 bytes, so this is the end.
+            endOfStream = true;
+            return false;
+        }
+
+        source = ByteBuffer.wrap(buffer, 0, count);
+
+        return true;
+    }
+
+    /**
+     * Maps the segment of the file that follows the current one. The first segment
+     * is kept, so that it doesn't need to be mapped again when reading the file again.
+     *
+     * @return True if there was a segment left, false if the whole file has been read.
+     * @throws IOException If we can't map the file.
+     */
+    private boolean mapNextSegment() throws IOException {
+
+        long start = source == EMPTY ? 0 : segmentStart + source.limit();
+
+        long fileSize = fileChannel.size();
+
+        if (start >= fileSize) {
+            endOfStream = true;
+            return false;
+        }
+
+        ByteBuffer segment = fileChannel.map(FileChannel.MapMode.READ_ONLY, start,
+                Math.min(segmentSize, fileSize - start));
+
+        if (start == 0) {
+            firstSegment = segment;
+            source = segment.duplicate();
+        } else {
+            source = segment;
+        }
+
+        segmentStart = start;
+
+        return true;
+    }
+
+    /**
+     * Returns the next bits from the stream without moving past them. If the
+     * stream ends before that many bits are available, the missing bits are zeros.
+     * <p>
+     * Used together with {@link #skipBits(int)} by the table-driven Huffman decoder.
+     *
+     * @param count How many bits to look at (at most 56).
+     * @return The bits as an integer, with the first bit as the highest one.
+     * @throws IOException If we can't read from the stream.
+     */
+    public int peekBits(int count) throws IOException {
+
+        if (bitsInWindow < count) {
+            fill();
+        }
+
+        if (bitsInWindow >= count) {
+            return (int) ((window >>> (bitsInWindow - count)) & mask(count));
+        } else {
+            // Not enough data left, so pad the end with zeros.
+            return (int) ((window << (count - bitsInWindow)) & mask(count));
+        }
+    }
+
+    /**
+     * Moves past bits that have previously been looked at with {@link #peekBits(int)}.
+     *
+     * @param count How many bits to skip. Must not be more than what was peeked.
+     */
+    public void consumeBits(int count) {
+        bitsInWindow = Math.max(bitsInWindow - count, 0);
+        window &= mask(bitsInWindow);
+    }
+
+    /**
+     * Moves past bits that have previously been looked at with {@link #peekBits(int)},
+     * just like {@link #consumeBits(int)}, but only if the stream had that many bits left.
+     *
+     * @param count How many bits to skip. Must not be more than what was peeked.
+     * @throws IOException If the stream ended before that many bits (they were padding).
+     */
+    public void skipBits(int count) throws IOException {
+
+        if (bitsInWindow < count) {
+            throw new IOException("Corrupted file.");
+        }
+
+        consumeBits(count);
+    }
+
+    /**
+     * Reads the next bits from the stream.
+     *
+     * @param count How many bits to read (at most 56).
+     * @return The bits as a long, with the first bit as the highest one.
+     * @throws IOException If we can't read from the stream, or if it ends before that many bits.
+     */
+    public long readBits(int count) throws IOException {
+
+        if (bitsInWindow < count) {
+            fill();
+
+            if (bitsInWindow < count) {
+                throw new IOException("Corrupted file.");
+            }
+        }
+
+        bitsInWindow -= count;
+
+        long bits = (window >>> bitsInWindow) & mask(count);
+
+        window &= mask(bitsInWindow);
+
+        // Keep the window topped up, so that the end of the data is noticed right away.
+        if (bitsInWindow == 0) {
+            fill();
+        }
+
+        return bits;
     }
 
     /**
@@ -66,11 +336,11 @@ public class BinaryReadTool {
      */
     public boolean readBool() throws IOException {
 
-        slots--;
+        boolean bit = peekBits(1) == 1;
 
-        boolean bit = ((bitBuffer >> slots) & 1) == 1;
+        consumeBits(1);
 
-        if (slots == 0) {
+        if (bitsInWindow == 0) {
             fill();
         }
 
@@ -78,45 +348,85 @@ public class BinaryReadTool {
     }
 
     /**
-     * Reads an 8-bit character from the stream.
+     * Reads an 8-bit character from the stream. The stream doesn't
+     * need to be at a byte boundary.
      *
      * @return The next 8-bit character from the stream.
      * @throws IOException If we can't read from the stream.
      */
     public char readChar() throws IOException {
 
-        if (slots == Main.BITS_IN_A_BYTE) {
-
-            // We can return the char directly.
+        char character = (char) peekBits(Main.BITS_IN_A_BYTE);
 
-            int temp = bitBuffer;
+        consumeBits(Main.BITS_IN_A_BYTE);
 
-            // Fill in the buffer before we continue.
+        // Fill in the buffer before we continue.
+        if (bitsInWindow == 0) {
             fill();
+        }
 
-            return (char) (temp & 0xff);
+        return character;
+    }
 
-        } else {
+    /**
+     * Reads bytes from the stream into the array, until either the given amount
+     * has been read or the stream runs out of data. If the stream is at a byte
+     * boundary, the bytes are copied straight from the buffer.
+     *
+     * @param data  The bytes are stored here, starting from the beginning.
+     * @param count How many bytes to read at most.
+     * @return How many bytes were actually read.
+     * @throws IOException If we can't read from the stream.
+     */
+    public int readBytes(byte[] data, int count) throws IOException {
 
-            // Need to pad the character a little bit, so it's 8 bits.
+        int index = 0;
 
-            int temp = bitBuffer;
+        // Not at a byte boundary, so every byte has to be put together from the window.
+        if (bitsInWindow % Main.BITS_IN_A_BYTE != 0) {
 
-            // Use bitwise operations (shift left).
+            while (index < count && streamHasData()) {
+                data[index++] = (byte) readChar();
+            }
 
-            temp <<= Main.BITS_IN_A_BYTE - slots;
+            return index;
+        }
 
-            int oldUsableSlots = slots;
+        // Take out the whole bytes that are already in the window.
+        while (index < count && bitsInWindow > 0) {
+            bitsInWindow -= Main.BITS_IN_A_BYTE;
+            data[index++] = (byte) (window >>> bitsInWindow);
+        }
 
-            // Fill in the buffer before we continue.
-            fill();
+        window &= mask(bitsInWindow);
+
+        // The rest come straight from the buffer (or the mapped file).
+        while (index < count && (source.hasRemaining() || refill())) {
+
+            int length = Math.min(count - index, source.remaining());
+
+            source.get(data, index, length);
 
-            slots = oldUsableSlots;
+            index += length;
+        }
+
+        fill();
 
-            temp |= bitBuffer >>> slots;
+        return index;
+    }
 
-            return (char) (temp & 0xff);
+    /**
+     * Creates a mask that keeps the given amount of the lowest bits.
+     *
+     * @param count How many bits to keep (between 0 and 64).
+     * @return The mask as a long.
+     */
+    private static long mask(int count) {
+        if (count >= Long.SIZE) {
+            return -1L;
         }
+
+        return (1L << count) - 1;
     }
 
     /**
@@ -127,64 +437,50 @@ public class BinaryReadTool {
      */
     public int readInt() throws IOException {
 
-        int output = 0;
-
-        for (int i = 0; i < 4; i++) {
-
-            char character = readChar();
-
-            // Bitwise operations to get a 32-bit integer. We'll
-            // iterate over this 4 times, and there are 8 bits in a byte
-            // so we'll end up with a 32-bit (4 * 8 = 32) integer value.
+        // All 32 bits are taken from the window at once. Just like with characters,
+        // the missing bits are zeros if the stream ends.
+        int output = peekBits(Integer.SIZE);
 
-            output <<= Main.BITS_IN_A_BYTE;
+        consumeBits(Integer.SIZE);
 
-            output |= character;
+        if (bitsInWindow == 0) {
+            fill();
         }
 
         return output;
     }
 
     /**
-     * Reads a codeword of the specified length (12-bit) from the stream.
-     * <p>
-     * Used by LZW, and not used by Huffman.
+     * Reads a long (64 bit) from the stream.
      *
-     * @return The codeword as an integer (this is a representation).
+     * @return The next long.
      * @throws IOException If we can't read from the stream.
      */
-    public int readCodeword() throws IOException {
-
-        int output = 0;
-
-        for (int i = 0; i < Main.CODEWORD_WIDTH; i++) {
+    public long readLong() throws IOException {
 
-            output <<= 1;
+        long high = readInt() & 0xffffffffL;
+        long low = readInt() & 0xffffffffL;
 
-            if (readBool()) {
-                output |= 1;
-            }
-        }
-
-        return output;
+        return (high << Integer.SIZE) | low;
     }
 
     /**
-     * Simply reads everything from the stream, beginning from the current position.
+     * Reads a codeword of the given width from the stream.
+     * <p>
+     * Used by LZW, and not used by Huffman.
      *
-     * @return A String containing all of the read data.
-     * @throws IOException If we can't read from the stream.
+     * @param width How many bits the codeword takes.
+     * @return The codeword as an integer (this is a representation).
+     * @throws IOException If we can't read from the stream, or if the stream has already ended.
      */
-    public String readData() throws IOException {
-        StringBuilder output = new StringBuilder();
+    public int readCodeword(int width) throws IOException {
 
-        // Read characters until the buffer is emptied out.
-        while (bitBuffer != -1) {
-            char character = readChar();
-            output.append(character);
+        // Otherwise a missing ending codeword would be read as endless zeros.
+        if (!streamHasData()) {
+            throw new IOException("Corrupted file.");
         }
 
-        return output.toString();
+        return (int) readBits(width);
     }
 
     /**
@@ -193,10 +489,25 @@ public class BinaryReadTool {
      * @return True if there's bytes to be read; false otherwise.
      */
     public boolean streamHasData() {
-        return bitBuffer != -1;
+        return bitsInWindow > 0;
     }
 
+    /**
+     * Closes the stream or the mapped file. The mapped memory itself is released once
+     * nothing refers to it anymore and it has been garbage collected. Until then, the
+     * file can't be deleted on Windows.
+     *
+     * @throws IOException If we can't close the stream.
+     */
     public void close() throws IOException {
-        bufferedInputStream.close();
+
+        source = EMPTY;
+        firstSegment = null;
+
+        if (fileChannel != null) {
+            fileChannel.close();
+        } else {
+            inputStream.close();
+        }
     }
 }
@@ -2,23 +2,44 @@ package io.github.gotonode.compress.io;
 
 import io.github.gotonode.compress.main.Main;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * This tool is used to write in binary data. Used by both Huffman and LZW.
  * <p>
  * Helper methods have been created to write in the specified amount of
  * data at once (1 bit, 32 bits, 1 byte etc).
+ * <p>
+ * All of them go through {@link #writeBits(long, int)}, which collects the bits into a
+ * 64-bit accumulator. Once the accumulator is full, all of its 8 bytes are moved into a
+ * byte buffer at once, and the buffer is written into the stream once it's full. Whole
+ * bytes written at a byte boundary skip the accumulator altogether.
+ * <p>
+ * Files are written with positional writes through their channel. If the final size of
+ * the file is known beforehand (as it is when decompressing), the length of the file can
+ * be set right away with {@link #preallocate(long)}. If writing fails halfway, the file
+ * should be closed with {@link #closeAfterFailure()}, which cuts it back to what was
+ * actually written.
  */
 public class BinaryWriteTool {
 
-    private BufferedOutputStream bufferedOutputStream;
-    private int slots; // How much space is left.
-    private int bitBuffer; // Bits waiting to be flushed.
+    private OutputStream outputStream;
+
+    private FileChannel fileChannel; // Set when writing into a file.
+    private long filePosition; // Where in the file the buffer is written next.
+    private long preallocatedLength; // How big the file was made beforehand.
+
+    private final byte[] buffer = new byte[Main.IO_BUFFER_SIZE]; // Bytes waiting to be written to the stream.
+    private int position; // How many bytes of the buffer are in use.
+
+    private long accumulator; // Bits waiting to be moved into the buffer, in the lowest bits.
+    private int bitCount; // How many bits the accumulator holds (always less than 64).
 
     /**
      * Instantiates this object.
@@ -30,7 +51,42 @@ public class BinaryWriteTool {
 
         FileOutputStream fileOutputStream = new FileOutputStream(file);
 
-        bufferedOutputStream = new BufferedOutputStream(fileOutputStream);
+        this.outputStream = fileOutputStream;
+        this.fileChannel = fileOutputStream.getChannel();
+    }
+
+    /**
+     * Instantiates this object so that it writes into an already opened stream, such
+     * as a buffer held in memory. The stream is closed by {@link #flushAndClose()}.
+     *
+     * @param outputStream The stream we'll be writing to.
+     */
+    public BinaryWriteTool(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Sets the length of the file to its final size before the data is written into it.
+     * This doesn't reserve any disk space: on most file systems the file is sparse until
+     * the data is actually written, so a full disk is still only noticed when writing.
+     * If less is written in the end, the file is cut to the right size when it's closed.
+     * <p>
+     * The length should be checked by the caller, as the file is grown to it right away.
+     * Does nothing when writing into a stream that isn't a file.
+     *
+     * @param length How many bytes will be written into the file in total.
+     * @throws IOException If we can't grow the file.
+     */
+    public void preallocate(long length) throws IOException {
+
+        if (fileChannel == null || length <= filePosition + position) {
+            return;
+        }
+
+        // Writing the last byte makes the file as long as it'll be.
+        fileChannel.write(ByteBuffer.wrap(new byte[1]), length - 1);
+
+        preallocatedLength = length;
     }
 
     /**
@@ -41,136 +97,279 @@ public class BinaryWriteTool {
      * @throws IOException If we can't write to the stream.
      */
     public void writeInt(int value) throws IOException {
-        writeByte((value >>> 24) & 0xff);
-        writeByte((value >>> 16) & 0xff);
-        writeByte((value >>> 8) & 0xff);
-        writeByte(value & 0xff);
+        writeBits(value & 0xffffffffL, Integer.SIZE);
+    }
+
+    /**
+     * Writes a long value (64 bits) into the stream, highest bits first.
+     *
+     * @param value The 64-bit long to write in.
+     * @throws IOException If we can't write to the stream.
+     */
+    public void writeLong(long value) throws IOException {
+        writeBits(value, Long.SIZE);
     }
 
     /**
      * Writes a 0 (false boolean) into the stream. This is buffered, and
-     * may not be written when this method is invoked. We only write 8 bits
-     * (a byte) at a time. Flushing is done at the end.
+     * may not be written when this method is invoked. Flushing is done at the end.
      *
      * @throws IOException If we can't write to the stream.
      */
     public void writeZeroBit() throws IOException {
-        writeBit(0);
+        writeBits(0, 1);
     }
 
     /**
      * Writes a 1 (true boolean) into the stream. This is buffered, and
-     * may not be written when this method is invoked. We only write 8 bits
-     * (a byte) at a time. Flushing is done at the end.
+     * may not be written when this method is invoked. Flushing is done at the end.
      *
      * @throws IOException If we can't write to the stream.
      */
     public void writeOneBit() throws IOException {
-        writeBit(1);
+        writeBits(1, 1);
     }
 
     /**
-     * Writes an entire byte (8 bits) into the stream.
+     * Writes into the stream.
      *
-     * @param value The byte value to be written.
+     * @param value The value to be written. Only the lowest 8 bits are used.
      * @throws IOException If we can't write to the stream.
      */
-    private void writeByte(int value) throws IOException {
-        bufferedOutputStream.write(value);
+    public void write(int value) throws IOException {
+        writeBits(value & 0xff, Main.BITS_IN_A_BYTE);
     }
 
     /**
-     * This private method does the actual writing of the bit.
+     * Writes the lowest bits of the value into the stream, starting from the highest
+     * of those bits. The bits are added to the accumulator all at once, and the
+     * accumulator is moved into the buffer only once it fills up.
      *
-     * @param bitValue Either a 0 or a 1, representing the bit.
+     * @param value The bits to write, as the lowest bits of a long.
+     * @param count How many bits to write (between 0 and 64).
      * @throws IOException If we can't write to the stream.
      */
-    private void writeBit(int bitValue) throws IOException {
+    public void writeBits(long value, int count) throws IOException {
+
+        long bits = value & mask(count);
 
-        bitBuffer <<= 1;
+        int free = Long.SIZE - bitCount;
 
-        if (bitValue == 1) {
-            bitBuffer |= 1;
+        if (count < free) {
+            // Everything fits, and there's still room for at least one more bit.
+            // (When the count is 0, the shift does nothing, which is fine.)
+            accumulator = (accumulator << count) | bits;
+            bitCount += count;
+            return;
         }
 
-        slots++;
+        // Fill up the accumulator with the highest bits, and move it into the buffer.
+        int rest = count - free;
 
-        // Clear the buffer if it's full.
-        if (slots == Main.BITS_IN_A_BYTE) {
-            clear();
+        if (free < Long.SIZE) {
+            accumulator = (accumulator << free) | (bits >>> rest);
+        } else {
+            accumulator = bits >>> rest;
         }
+
+        writeAccumulator();
+
+        // The bits that didn't fit start the next accumulator.
+        accumulator = bits & mask(rest);
+        bitCount = rest;
     }
 
     /**
-     * Writes into the stream.
+     * Writes the given bytes into the stream. If the stream is at a byte boundary,
+     * the bytes are copied as they are, without going through the accumulator.
+     * Otherwise they are still written 8 bytes at a time.
      *
-     * @param value The value to be written.
+     * @param data   The bytes to write.
+     * @param offset Where in the array to start from.
+     * @param length How many bytes to write.
      * @throws IOException If we can't write to the stream.
      */
-    public void write(int value) throws IOException {
+    public void writeBytes(byte[] data, int offset, int length) throws IOException {
 
-        // Loop through all 8 bits.
-        for (int i = 0; i < Main.BITS_IN_A_BYTE; i++) {
+        if (bitCount % Main.BITS_IN_A_BYTE == 0) {
+            drainAccumulator();
+            copyIntoBuffer(data, offset, length);
+            return;
+        }
+
+        int index = offset;
+        int end = offset + length;
 
-            boolean bit = ((value >>> (Main.BITS_IN_A_BYTE - i - 1)) & 1) == 1;
+        while (end - index >= Long.BYTES) {
 
-            // Writes one bit at a time. Content is written to disk only
-            // when it's flushed (at the end).
-            if (bit) {
-                writeOneBit();
-            } else {
-                writeZeroBit();
+            long word = 0;
+
+            for (int i = 0; i < Long.BYTES; i++) {
+                word = (word << Main.BITS_IN_A_BYTE) | (data[index++] & 0xff);
             }
+
+            writeBits(word, Long.SIZE);
+        }
+
+        while (index < end) {
+            write(data[index++]);
         }
     }
 
     /**
-     * Writes a codeword to the stream.
+     * Writes a codeword of the given width to the stream.
+     * <p>
+     * Used by LZW, and not used by Huffman.
      *
      * @param value The codeword to write.
+     * @param width How many bits the codeword takes.
      * @throws IOException If we can't write to the stream.
      */
-    public void writeCodeword(int value) throws IOException {
+    public void writeCodeword(int value, int width) throws IOException {
+        writeBits(value, width);
+    }
 
-        for (int i = 0; i < Main.CODEWORD_WIDTH; i++) {
+    /**
+     * Moves the full accumulator (64 bits) into the buffer, highest byte first.
+     *
+     * @throws IOException If we can't write to the stream.
+     */
+    private void writeAccumulator() throws IOException {
+
+        if (buffer.length - position < Long.BYTES) {
+            writeBuffer();
+        }
+
+        for (int shift = Long.SIZE - Main.BITS_IN_A_BYTE; shift >= 0; shift -= Main.BITS_IN_A_BYTE) {
+            buffer[position++] = (byte) (accumulator >>> shift);
+        }
+
+        accumulator = 0;
+        bitCount = 0;
+    }
 
-            boolean bit = ((value >>> (Main.CODEWORD_WIDTH - i - 1)) & 1) == 1;
+    /**
+     * Moves the whole bytes from the accumulator into the buffer. Fewer than
+     * 8 bits are left in the accumulator afterwards.
+     *
+     * @throws IOException If we can't write to the stream.
+     */
+    private void drainAccumulator() throws IOException {
 
-            // Writes one bit at a time. Content is written to disk only
-            // when it's flushed (at the end).
-            if (bit) {
-                writeOneBit();
-            } else {
-                writeZeroBit();
+        while (bitCount >= Main.BITS_IN_A_BYTE) {
+
+            if (position == buffer.length) {
+                writeBuffer();
             }
+
+            bitCount -= Main.BITS_IN_A_BYTE;
+            buffer[position++] = (byte) (accumulator >>> bitCount);
         }
+
+        accumulator &= mask(bitCount);
     }
 
     /**
-     * Clears the buffer, adding the contents into the stream. Stream is not
-     * written to disk until it is flushed (which is done at the end).
+     * Copies bytes into the buffer, writing the buffer into the stream whenever it's full.
+     * Runs that are bigger than the buffer are written into the stream directly.
      *
+     * @param data   The bytes to copy.
+     * @param offset Where in the array to start from.
+     * @param length How many bytes to copy.
      * @throws IOException If we can't write to the stream.
      */
-    private void clear() throws IOException {
+    private void copyIntoBuffer(byte[] data, int offset, int length) throws IOException {
 
-        if (slots > 0) {
-            // Bitwise move to make it into a byte.
-            bitBuffer <<= Main.BITS_IN_A_BYTE - slots;
+        if (length >= buffer.length) {
+            writeBuffer();
+            writeOut(data, offset, length);
+            return;
         }
 
-        // Write the bit buffer (containing a byte) into the stream to
-        // await for flushing.
-        bufferedOutputStream.write(bitBuffer);
+        int index = offset;
+        int remaining = length;
 
-        // Reset these to zero.
-        slots = 0;
-        bitBuffer = 0;
+        while (remaining > 0) {
+
+            if (position == buffer.length) {
+                writeBuffer();
+            }
+
+            int count = Math.min(remaining, buffer.length - position);
+
+            System.arraycopy(data, index, buffer, position, count);
+
+            position += count;
+            index += count;
+            remaining -= count;
+        }
     }
 
     /**
-     * Clears the buffer (writes the bytes into the stream), flushes the stream
-     * into the output file (actual disk I/O operation) and closes the streams.
+     * Writes the buffer into the stream, and empties it. The stream is not
+     * necessarily written to disk until it is flushed (which is done at the end).
+     *
+     * @throws IOException If we can't write to the stream.
+     */
+    private void writeBuffer() throws IOException {
+        writeOut(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Writes bytes into the stream, or into the file at the current position.
+     *
+     * @param data   The bytes to write.
+     * @param offset Where in the array to start from.
+     * @param length How many bytes to write.
+     * @throws IOException If we can't write to the stream.
+     */
+    private void writeOut(byte[] data, int offset, int length) throws IOException {
+
+        if (fileChannel == null) {
+            outputStream.write(data, offset, length);
+            return;
+        }
+
+        ByteBuffer byteBuffer = ByteBuffer.wrap(data, offset, length);
+
+        while (byteBuffer.hasRemaining()) {
+            filePosition += fileChannel.write(byteBuffer, filePosition);
+        }
+    }
+
+    /**
+     * Creates a mask that keeps the given amount of the lowest bits.
+     *
+     * @param count How many bits to keep (between 0 and 64).
+     * @return The mask as a long.
+     */
+    private static long mask(int count) {
+        if (count >= Long.SIZE) {
+            return -1L;
+        }
+
+        return (1L << count) - 1;
+    }
+
+    /**
+     * Writes the whole bytes written so far into the stream, and flushes the stream.
+     * The last bits that don't make up a whole byte yet are kept until more is written.
+     *
+     * @throws IOException If we can't write to the stream.
+     */
+    public void flush() throws IOException {
+
+        drainAccumulator();
+        writeBuffer();
+
+        outputStream.flush();
+    }
+
+    /**
+     * Writes the remaining bits into the buffer (padding the last byte with zeros),
+     * flushes the stream into the output file (actual disk I/O operation) and closes
+     * the stream.
      * <p>
      * After this method has been called, this class should not be reused.
      *
@@ -178,31 +377,73 @@ public class BinaryWriteTool {
      */
     public void flushAndClose() throws IOException {
 
-        // If we have stuff we haven't written to the stream yet, do
-        // so before we flush everything down.
-        if (slots != 0) {
-            clear();
+        drainAccumulator();
+
+        // If we have bits that don't make up a whole byte, the rest of the byte is zeros.
+        if (bitCount > 0) {
+            writeBits(0, Main.BITS_IN_A_BYTE - bitCount);
+            drainAccumulator();
+        }
+
+        writeBuffer();
+
+        // Less was written than was expected, so the rest of the file is cut off.
+        if (fileChannel != null && filePosition < preallocatedLength) {
+            fileChannel.truncate(filePosition);
         }
 
         // Flushes the bits into the output.
-        bufferedOutputStream.flush();
+        outputStream.flush();
 
         // Closes this stream. We're done with it.
-        bufferedOutputStream.close();
+        outputStream.close();
 
         // So it'll throw an error if this is tried to be reused.
-        bufferedOutputStream = null;
+        outputStream = null;
+    }
+
+    /**
+     * Closes the stream after writing has failed halfway. The whole bytes written so far
+     * are kept, but a file is cut back to them, so that a preallocated file isn't left at
+     * its full size with zeros after the point of failure.
+     * <p>
+     * Does nothing if the stream has already been closed.
+     *
+     * @throws IOException If we can't write to the stream or cut the file.
+     */
+    public void closeAfterFailure() throws IOException {
+
+        if (outputStream == null) {
+            return;
+        }
+
+        try {
+            drainAccumulator();
+            writeBuffer();
+
+            if (fileChannel != null) {
+                fileChannel.truncate(filePosition);
+            }
+        } finally {
+            outputStream.close();
+            outputStream = null;
+        }
     }
 
     /**
-     * Writes a String into the stream. It is processed one character at a time, so this is a convenience function.
+     * Writes a String into the stream, the lowest 8 bits of each character.
      *
      * @param value The String value to be written to the stream.
      * @throws IOException If we can't write to the stream or to the file.
      */
     public void writeString(String value) throws IOException {
-        for (int i = 0; i < value.length(); i++) {
-            write(value.charAt(i));
+
+        byte[] data = new byte[value.length()];
+
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) value.charAt(i);
         }
+
+        writeBytes(data, 0, data.length);
     }
 }
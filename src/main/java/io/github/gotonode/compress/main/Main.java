@@ -27,10 +27,9 @@ public class Main {
     // We're using the Extended ASCII alphabet here (256 instead of 128).
     public static final int ALPHABET_SIZE = 256;
 
-    // You can change these, but usually there's no need unless you want to open
-    // Huffman coded files that had these the other way around.
-    public static final int LEFT_TREE_BINARY_VALUE = 0;
-    public static final int RIGHT_TREE_BINARY_VALUE = 1;
+    // How many bits the Huffman decoder looks at once. Longer codes are decoded
+    // through sub-tables. Bigger values use more memory (2^11 = 2048 table entries).
+    public static final int HUFFMAN_TABLE_BITS = 11;
 
     // Used by the binary write and read tools. Preferably do not change this value.
     public static final int BITS_IN_A_BYTE = 8;
@@ -38,11 +37,63 @@ public class Main {
     // Pretty self-explanatory.
     public static final int BYTES_IN_A_KILOBYTE = 1024;
 
-    // We're using a codeword of size 12, as that's the most common one.
-    public static final int CODEWORD_WIDTH = 12;
+    // How many bytes the binary read and write tools buffer at once (64 kB).
+    public static final int IO_BUFFER_SIZE = 64 * BYTES_IN_A_KILOBYTE;
 
-    // We'll use 2 to the power of CODEWORD_WIDTH codewords in total (2^12 = 4096).
-    public static final int CODEWORD_COUNT = (int) Math.pow(2, CODEWORD_WIDTH);
+    // Set MEMORY_MAPPED_INPUT to true to map files of at least this size (1 MB) into memory
+    // when they're read, instead of reading them as streams. Off by default: the mapped memory
+    // is only released by the garbage collector, and until then Windows keeps the file locked.
+    public static final boolean MEMORY_MAPPED_INPUT = false;
+    public static final long MAPPED_INPUT_MIN_SIZE = 1024 * BYTES_IN_A_KILOBYTE;
+
+    // When decompressing, the length of the output file is set from the length stored in the
+    // header, but to no more than this many times the size of the compressed file, in case
+    // the header is corrupted. Data that compresses better than this is still decompressed
+    // in full, the output file just grows past the length that was set.
+    public static final int PREALLOCATION_MAX_RATIO = 8;
+
+    // How much of a file is mapped into memory at once (1 GB). A single mapping can't be
+    // bigger than 2 GB, so bigger files are mapped in segments.
+    public static final int MAPPED_SEGMENT_SIZE = 1024 * 1024 * BYTES_IN_A_KILOBYTE;
+
+    // How much data each block holds in the block mode of Huffman (1 MB). Every block
+    // gets its own code lengths, so smaller blocks follow the data more closely.
+    public static final int HUFFMAN_BLOCK_SIZE = 1024 * BYTES_IN_A_KILOBYTE;
+
+    // When Huffman samples the data instead of reading all of it, this many windows
+    // of this size (64 × 64 kB = 4 MB in total) are spread evenly over the data.
+    public static final int HUFFMAN_SAMPLE_WINDOW_SIZE = 64 * BYTES_IN_A_KILOBYTE;
+    public static final int HUFFMAN_SAMPLE_WINDOWS = 64;
+
+    // How many tables the order-1 mode of Huffman can use at most (at most 256). The previous
+    // characters are grouped so that similar ones share a table.
+    public static final int HUFFMAN_CONTEXT_TABLES = 8;
+
+    // LZW codewords start out with 9 bits (enough for the 256 characters and the ending
+    // codeword), and grow one bit at a time as the dictionary grows.
+    public static final int CODEWORD_MIN_WIDTH = 9;
+
+    // The longest LZW codewords, and the default limit (2^16 = 65536 codewords in total).
+    public static final int CODEWORD_WIDTH = 16;
+
+    // We'll use at most 2 to the power of CODEWORD_WIDTH codewords in total.
+    public static final int CODEWORD_COUNT = 1 << CODEWORD_WIDTH;
+
+    // How much data each chunk holds in the chunked mode of LZW (4 MB), when it's turned on.
+    // Every chunk starts with an empty dictionary, so bigger chunks compress better.
+    public static final int LZW_CHUNK_SIZE = 4 * 1024 * BYTES_IN_A_KILOBYTE;
+
+    // How many strings a preset LZW dictionary trained in the app holds by default. Enough
+    // for the common strings of small files, while leaving room for the strings of the file.
+    public static final int LZW_PRESET_SIZE = 4000;
+
+    // The biggest Huffman block or LZW chunk that can be chosen in the app (1 GB), as each
+    // one is held in memory whole while it's being coded.
+    public static final int MAX_BLOCK_SIZE = 1024 * 1024 * BYTES_IN_A_KILOBYTE;
+
+    // Once the LZW dictionary is full, the compression ratio is checked over windows of
+    // this many bytes (64 kB). If it gets clearly worse, the dictionary is emptied.
+    public static final int LZW_RATIO_WINDOW = 64 * BYTES_IN_A_KILOBYTE;
 
     // Set to true to enable verbose logging to console. Will slow things down!
     public static final boolean DEBUG = false;
@@ -53,8 +104,29 @@ public class Main {
     // These codes are added at the beginning of compressed files, and checked
     // when decompressing a file. If the file chosen for decompression doesn't
     // start with either of these, an error is thrown.
-    public static final int HUFFMAN_CODE = 0xAAAAAAAA; // ‭2863311530‬
-    public static final int LZW_CODE = 0xBBBBBBBB; // ‭3149642683‬
+    public static final int HUFFMAN_CODE = 0xAAAAAAA5; // 2863311525
+    public static final int LZW_CODE = 0xBBBBBBB3; // 3149642675
+
+    // Files compressed by older versions of this app start with these codes. Their headers
+    // have changed since, so such files are rejected instead of being decompressed wrong.
+    public static final int HUFFMAN_OLD_CODE = 0xAAAAAAAA; // 2863311530
+    public static final int LZW_OLD_CODE = 0xBBBBBBBB; // 3149642683
+
+    // LZW can also be used in chunks, which have a file format of their own.
+    public static final int LZW_CHUNKED_CODE = 0xBBBBBBB1; // 3149642673
+
+    // Saved LZW preset dictionaries start with this code.
+    public static final int LZW_PRESET_CODE = 0xBBBBBBB2; // 3149642674
+
+    // Huffman can also be used in other modes, which have a file format of their own.
+    public static final int HUFFMAN_ADAPTIVE_CODE = 0xAAAAAAA1; // 2863311521
+    public static final int HUFFMAN_BLOCK_CODE = 0xAAAAAAA2; // 2863311522
+    public static final int HUFFMAN_INTERLEAVED_CODE = 0xAAAAAAA3; // 2863311523
+    public static final int HUFFMAN_ORDER1_CODE = 0xAAAAAAA4; // 2863311524
+
+    // Stored in place of the data length when compressing a stream, whose length
+    // isn't known until the end. Only the block and chunked formats allow this.
+    public static final long UNKNOWN_LENGTH = -1;
 
     // Multiply the size of the priority queue by this amount, and also
     // divide the size with the same amount. Usually no need to change.
@@ -2,6 +2,7 @@ package io.github.gotonode.compress.ui;
 
 import io.github.gotonode.compress.enums.Algorithms;
 import io.github.gotonode.compress.enums.Commands;
+import io.github.gotonode.compress.enums.HuffmanModes;
 import io.github.gotonode.compress.main.Main;
 
 import java.text.DecimalFormat;
@@ -167,6 +168,21 @@ public class UiController {
         return askForString("Name of your target file (will be overwritten if it exists)", false);
     }
 
+    /**
+     * Asks the name of a preset dictionary file. Optionally, the user can choose not to use one.
+     *
+     * @param optional If true, the user can leave the name empty to not use a preset.
+     * @return A String containing the preset file's name, or an empty String for none.
+     */
+    public String askForPresetFilePath(boolean optional) {
+
+        if (optional) {
+            return askForString("Name of your preset dictionary file (press enter for none)", true);
+        }
+
+        return askForString("Name of your preset dictionary file (must already exist)", false);
+    }
+
     /**
      * Asks the user for a string. Optionally doesn't allow empty strings.
      *
@@ -194,6 +210,121 @@ public class UiController {
         return data;
     }
 
+    /**
+     * Asks which mode Huffman coding is used in. Each mode is listed along with the
+     * character to choose it with.
+     *
+     * @return The chosen mode.
+     */
+    public HuffmanModes askForHuffmanMode() {
+
+        System.out.println("Please choose the mode for " + algorithmText(Algorithms.HUFFMAN, true) + ":");
+
+        HuffmanModes[] modes = HuffmanModes.values();
+        Character[] allowedChars = new Character[modes.length];
+
+        for (int i = 0; i < modes.length; i++) {
+            allowedChars[i] = modes[i].getCommand();
+            System.out.println(twoSpaces + commandText(modes[i].getCommand()) + ": " + modes[i].getName());
+        }
+
+        char character = askForCharacter(allowedChars, "Mode");
+
+        for (HuffmanModes mode : modes) {
+            if (mode.getCommand() == character) {
+                return mode;
+            }
+        }
+
+        // Never happens, as only the characters of the modes are accepted.
+        throw new IllegalArgumentException();
+    }
+
+    /**
+     * Asks the user a yes or no question.
+     *
+     * @param prompt What to ask the user.
+     * @return True if the user answered yes, false otherwise.
+     */
+    public boolean askForYesOrNo(String prompt) {
+        return askForCharacter(new Character[]{'Y', 'N'}, prompt.trim() + " (Y/N)") == 'Y';
+    }
+
+    /**
+     * Continuously ask the user for a whole number, until one within the range is given.
+     * An empty answer chooses the default value.
+     *
+     * @param prompt       What to ask the user.
+     * @param min          The smallest allowed number.
+     * @param max          The biggest allowed number.
+     * @param defaultValue The number to use if the user doesn't enter anything.
+     * @return A valid number.
+     */
+    public int askForNumber(String prompt, int min, int max, int defaultValue) {
+
+        while (true) {
+
+            Integer number = readNumber(prompt, defaultValue);
+
+            if (number != null && number >= min && number <= max) {
+                return number;
+            }
+
+            System.out.println("Please enter a number from " + importantText(min)
+                    + " to " + importantText(max) + ".");
+            printEmptyLine();
+        }
+    }
+
+    /**
+     * Continuously ask the user for a whole number that turns something off with a zero,
+     * until either a zero or a number within the range is given. An empty answer chooses
+     * the zero.
+     *
+     * @param prompt What to ask the user.
+     * @param min    The smallest allowed number other than the zero.
+     * @param max    The biggest allowed number.
+     * @return A valid number, or zero.
+     */
+    public int askForNumberOrZero(String prompt, int min, int max) {
+
+        while (true) {
+
+            Integer number = readNumber(prompt, 0);
+
+            if (number != null && (number == 0 || (number >= min && number <= max))) {
+                return number;
+            }
+
+            System.out.println("Please enter " + importantText(0) + ", or a number from "
+                    + importantText(min) + " to " + importantText(max) + ".");
+            printEmptyLine();
+        }
+    }
+
+    /**
+     * Reads in a whole number, telling the user which number an empty answer chooses.
+     *
+     * @param prompt       What to ask the user.
+     * @param defaultValue The number to use if the user doesn't enter anything.
+     * @return The number, or null if the answer wasn't a whole number.
+     */
+    private Integer readNumber(String prompt, int defaultValue) {
+
+        String next = askForString(prompt.trim() + " (press enter for "
+                + importantText(defaultValue) + ")", true);
+
+        if (next.isEmpty()) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(next.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
     /**
      * Prints an empty line. Simple.
      */
@@ -221,6 +352,9 @@ public class UiController {
                 + algorithmText(Algorithms.HUFFMAN, true)
                 + " against " + algorithmText(Algorithms.LZW, true));
 
+        System.out.println(twoSpaces + commandText(Commands.TRAIN_PRESET.getCommand())
+                + ": Train a preset dictionary for " + algorithmText(Algorithms.LZW, true));
+
         System.out.println(twoSpaces + commandText(Commands.COMMANDS.getCommand())
                 + ": Print these instructions again");
 
@@ -228,6 +362,52 @@ public class UiController {
                 + ": Exit from the program");
     }
 
+    /**
+     * Prints what a preset dictionary is good for, before training one.
+     */
+    public void printTrainingPreset() {
+        System.out.println("We'll train a preset dictionary for " + algorithmText(Algorithms.LZW, true)
+                + " from your chosen sample file. It helps with small files, which are over before "
+                + algorithmText(Algorithms.LZW, true) + " has learned much from them.");
+
+        System.out.println("Choose a sample with plenty of data that looks like the files you'll compress.");
+    }
+
+    /**
+     * Training the preset dictionary was successful. Report it.
+     *
+     * @param presetId   The ID of the preset dictionary.
+     * @param size       How many strings the preset dictionary holds.
+     * @param targetPath Where the preset dictionary was saved to.
+     */
+    public void printPresetSaved(int presetId, int size, String targetPath) {
+        System.out.println("Done! The preset dictionary " + importantText(Integer.toHexString(presetId))
+                + " holds " + importantText(size) + " strings, and is located at '"
+                + importantText(targetPath) + "'.");
+
+        System.out.println("Keep it safe, as the files compressed with it can't be decompressed without it.");
+    }
+
+    /**
+     * If the file to decompress needs a preset dictionary, tell which one.
+     *
+     * @param presetId The ID of the preset dictionary.
+     */
+    public void printPresetNeeded(int presetId) {
+        System.out.println("This file was compressed with the preset dictionary "
+                + importantText(Integer.toHexString(presetId)) + ", so you'll need the same preset.");
+    }
+
+    /**
+     * If the given preset dictionary is not the one the file was compressed with, report it.
+     *
+     * @param presetId The ID of the preset dictionary that was given.
+     */
+    public void printWrongPreset(int presetId) {
+        System.out.println("That is the preset dictionary " + importantText(Integer.toHexString(presetId))
+                + ", not the one this file was compressed with.");
+    }
+
     /**
      * When there's an error with a file, tell about it.
      */
@@ -330,7 +510,14 @@ public class UiController {
      *
      * @param decompressedDataLength Amount in kilobytes.
      */
-    public void printDecompressedDataLength(int decompressedDataLength) {
+    public void printDecompressedDataLength(long decompressedDataLength) {
+
+        // Compressed as a stream, so the length wasn't known when the header was written.
+        if (decompressedDataLength < 0) {
+            System.out.println("The length of the data wasn't stored, so we'll see how much we write.");
+            return;
+        }
+
         System.out.println("We'll write exactly " + importantText(decompressedDataLength) + " bytes to disk.");
     }
 
@@ -513,6 +700,15 @@ public class UiController {
         System.out.println("Perhaps the file has been corrupted?");
     }
 
+    /**
+     * If a file chosen for decompression has been compressed by an older version
+     * of this app, whose format isn't supported anymore, print an error message.
+     */
+    public void printUnsupportedVersion() {
+        System.out.println("Unsupported format version. This file has been compressed with an older version"
+                + " of this app, and can't be decompressed with this one.");
+    }
+
     private String formatTwoDecimals(Object data) {
         return new DecimalFormat("#.##").format(data);
     }
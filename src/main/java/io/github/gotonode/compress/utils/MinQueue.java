@@ -1,6 +1,5 @@
 package io.github.gotonode.compress.utils;
 
-import io.github.gotonode.compress.algorithms.huffman.HuffmanNode;
 import io.github.gotonode.compress.main.Main;
 
 /**
@@ -8,8 +7,8 @@ import io.github.gotonode.compress.main.Main;
  * Iterable-functionality.
  * <p>
  * To create a new MinQueue, you must specify which variable type
- * it should hold. Currently, only Huffman uses this and thus
- * the type will be {@link HuffmanNode}.
+ * it should hold. The type must be comparable. Huffman used to build
+ * its tree with this, but now keeps the tree in flat arrays instead.
  *
  * @param <Type> What type should this queue consist of.
  */
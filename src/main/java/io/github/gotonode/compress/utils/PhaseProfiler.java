@@ -0,0 +1,166 @@
+package io.github.gotonode.compress.utils;
+
+import io.github.gotonode.compress.enums.ProfilerCounters;
+import io.github.gotonode.compress.enums.ProfilerPhases;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures how much time compressing or decompressing spends in each of its phases (see
+ * {@link ProfilerPhases}), and counts the operations that happen too often to be timed
+ * (see {@link ProfilerCounters}).
+ * <p>
+ * The clock is only read when the algorithm moves from one phase to the next, which
+ * happens a handful of times per file, so the profiling costs next to nothing. The
+ * times are wall-clock times of the thread that runs the algorithm. When the work is
+ * spread over several threads (the block and chunked modes), the time spent waiting
+ * for them counts towards the phase that waits.
+ * <p>
+ * The counters may be updated from any thread. The phases must only be changed from
+ * the thread that runs the algorithm.
+ * <p>
+ * An algorithm that hasn't been given a profiler uses {@link #DISABLED}, which ignores
+ * everything, so profiling can be turned on and off at runtime.
+ */
+public class PhaseProfiler {
+
+    // Ignores all of the calls. Used when profiling is turned off.
+    public static final PhaseProfiler DISABLED = new PhaseProfiler(false);
+
+    private final boolean enabled;
+
+    // The total time spent in each phase, in nanoseconds.
+    private final long[] times = new long[ProfilerPhases.values().length];
+
+    private final AtomicLongArray counts = new AtomicLongArray(ProfilerCounters.values().length);
+
+    // The phase that is going on, or null if none is.
+    private ProfilerPhases currentPhase;
+
+    // When the current phase started, from System.nanoTime().
+    private long phaseStart;
+
+    /**
+     * Creates a new profiler, with no time spent and nothing counted.
+     */
+    public PhaseProfiler() {
+        this(true);
+    }
+
+    private PhaseProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Ends the current phase (if any) and starts the given one.
+     *
+     * @param phase The phase that starts now.
+     */
+    public void start(ProfilerPhases phase) {
+
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.nanoTime();
+
+        if (currentPhase != null) {
+            times[currentPhase.ordinal()] += now - phaseStart;
+        }
+
+        currentPhase = phase;
+        phaseStart = now;
+    }
+
+    /**
+     * Ends the current phase, if there is one.
+     */
+    public void stop() {
+
+        if (!enabled || currentPhase == null) {
+            return;
+        }
+
+        times[currentPhase.ordinal()] += System.nanoTime() - phaseStart;
+
+        currentPhase = null;
+    }
+
+    /**
+     * Adds to a counter. Meant to be called once per block or file with a total, rather
+     * than once per operation.
+     *
+     * @param counter The counter to add to.
+     * @param amount  How much to add.
+     */
+    public void count(ProfilerCounters counter, long amount) {
+
+        if (!enabled) {
+            return;
+        }
+
+        counts.addAndGet(counter.ordinal(), amount);
+    }
+
+    /**
+     * Tells how much time has been spent in a phase. A phase that is still going on
+     * only counts up to when it was last ended.
+     *
+     * @param phase The phase.
+     * @return The time in nanoseconds.
+     */
+    public long getTime(ProfilerPhases phase) {
+        return times[phase.ordinal()];
+    }
+
+    /**
+     * Tells how much time has been spent in all of the phases together.
+     *
+     * @return The time in nanoseconds.
+     */
+    public long getTotalTime() {
+
+        long total = 0;
+
+        for (long time : times) {
+            total += time;
+        }
+
+        return total;
+    }
+
+    /**
+     * Tells the value of a counter.
+     *
+     * @param counter The counter.
+     * @return How much has been added to the counter.
+     */
+    public long getCount(ProfilerCounters counter) {
+        return counts.get(counter.ordinal());
+    }
+
+    // Getters are self-explanatory, and do not get their own Javadoc comments.
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder stringBuilder = new StringBuilder("PhaseProfiler{");
+
+        for (ProfilerPhases phase : ProfilerPhases.values()) {
+            stringBuilder.append(phase.getName()).append('=')
+                    .append(getTime(phase) / 1_000_000.0d).append(" ms, ");
+        }
+
+        for (ProfilerCounters counter : ProfilerCounters.values()) {
+            stringBuilder.append(counter.getName()).append('=').append(getCount(counter)).append(", ");
+        }
+
+        stringBuilder.setLength(stringBuilder.length() - 2);
+
+        return stringBuilder.append('}').toString();
+    }
+}
@@ -0,0 +1,392 @@
+package io.github.gotonode.compress.algorithms;
+
+import io.github.gotonode.compress._generic._Generic;
+import io.github.gotonode.compress.algorithms.huffman.Huffman;
+import io.github.gotonode.compress.algorithms.lzw.LZW;
+import io.github.gotonode.compress.enums.Algorithms;
+import io.github.gotonode.compress.enums.HuffmanModes;
+import io.github.gotonode.compress.main.Main;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressingStreamsTest {
+
+    private static TemporaryFolder tempFolder;
+    private _Generic _generic;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        tempFolder = new TemporaryFolder();
+        tempFolder.create();
+    }
+
+    @Before
+    public void before() {
+        _generic = new _Generic();
+    }
+
+    @Test
+    public void huffmanStreamRoundTripTest() throws IOException {
+        File file = _generic.generateTextFile(tempFolder.getRoot() + "/stream.huffman.txt");
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        assertArrayEquals(data, decompress(compress(data, Algorithms.HUFFMAN)));
+    }
+
+    @Test
+    public void lzwStreamRoundTripTest() throws IOException {
+        File file = _generic.generateBinaryFile(tempFolder.getRoot() + "/stream.lzw.bin");
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        assertArrayEquals(data, decompress(compress(data, Algorithms.LZW)));
+    }
+
+    @Test
+    public void huffmanAdaptiveStreamRoundTripTest() throws IOException {
+        File file = _generic.generateTextFile(tempFolder.getRoot() + "/stream.adaptive.txt");
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        assertArrayEquals(data, decompress(compress(data, HuffmanModes.ADAPTIVE)));
+        assertArrayEquals(data, decompress(compress(data, HuffmanModes.INTERLEAVED)));
+
+        assertArrayEquals(new byte[0], decompress(compress(new byte[0], HuffmanModes.ADAPTIVE)));
+    }
+
+    @Test
+    public void adaptiveFlushInTheMiddleTest() throws IOException {
+        File file = _generic.generateTextFile(tempFolder.getRoot() + "/stream.adaptive.flush.txt");
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        CompressingOutputStream compressingOutputStream
+                = new CompressingOutputStream(byteArrayOutputStream, HuffmanModes.ADAPTIVE);
+
+        compressingOutputStream.write(data, 0, data.length / 2);
+        compressingOutputStream.flush();
+
+        InputStream inputStream = new DecompressingInputStream(
+                new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+
+        // Less than a byte is held back, so at most the last few characters are missing.
+        for (int i = 0; i < data.length / 2 - Main.BITS_IN_A_BYTE; i++) {
+            assertEquals(data[i] & 0xff, inputStream.read());
+        }
+
+        compressingOutputStream.write(data, data.length / 2, data.length - data.length / 2);
+        compressingOutputStream.close();
+
+        assertArrayEquals(data, decompress(byteArrayOutputStream.toByteArray()));
+    }
+
+    @Test
+    public void adaptiveStreamAndFileTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/stream.adaptive.file.txt");
+        File streamFile = new File(tempFolder.getRoot() + "/stream.adaptive.file.COMPRESSED");
+        File compressedFile = new File(tempFolder.getRoot() + "/file.adaptive.stream.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/stream.adaptive.file.DECOMPRESSED");
+
+        byte[] data = Files.readAllBytes(textFile.toPath());
+
+        // Compressed as a stream, decompressed as a file.
+        Files.write(streamFile.toPath(), compress(data, HuffmanModes.ADAPTIVE));
+
+        assertTrue(new Huffman(streamFile, outputFile).decompress());
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+
+        // Compressed as a file, decompressed as a stream.
+        Huffman huffman = new Huffman(textFile, compressedFile);
+        huffman.setMode(HuffmanModes.ADAPTIVE);
+        assertTrue(huffman.compress());
+
+        assertArrayEquals(data, decompress(Files.readAllBytes(compressedFile.toPath())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void staticModeStreamTest() throws IOException {
+        new CompressingOutputStream(new ByteArrayOutputStream(), HuffmanModes.STATIC).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedAdaptiveStreamTest() throws IOException {
+        File file = _generic.generateTextFile(tempFolder.getRoot() + "/stream.adaptive.cut.txt");
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        byte[] compressedData = compress(data, HuffmanModes.ADAPTIVE);
+
+        decompress(Arrays.copyOf(compressedData, compressedData.length / 2));
+    }
+
+    @Test
+    public void emptyStreamTest() throws IOException {
+        byte[] data = new byte[0];
+
+        assertArrayEquals(data, decompress(compress(data, Algorithms.HUFFMAN)));
+        assertArrayEquals(data, decompress(compress(data, Algorithms.LZW)));
+    }
+
+    @Test
+    public void flushInTheMiddleTest() throws IOException {
+        File file = _generic.generateTextFile(tempFolder.getRoot() + "/stream.flush.txt");
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        CompressingOutputStream compressingOutputStream
+                = new CompressingOutputStream(byteArrayOutputStream, Algorithms.LZW);
+
+        // Everything before the flush can be decompressed right away.
+        compressingOutputStream.write(data, 0, data.length / 2);
+        compressingOutputStream.flush();
+
+        InputStream inputStream = new DecompressingInputStream(
+                new ByteArrayInputStream(byteArrayOutputStream.toByteArray()));
+
+        for (int i = 0; i < data.length / 2; i++) {
+            assertEquals(data[i] & 0xff, inputStream.read());
+        }
+
+        compressingOutputStream.write(data, data.length / 2, data.length - data.length / 2);
+        compressingOutputStream.close();
+
+        assertArrayEquals(data, decompress(byteArrayOutputStream.toByteArray()));
+    }
+
+    @Test
+    public void readAheadDoesNotWaitTest() throws IOException {
+        File file = _generic.generateTextFile(tempFolder.getRoot() + "/stream.wait.txt");
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        CompressingOutputStream compressingOutputStream
+                = new CompressingOutputStream(byteArrayOutputStream, Algorithms.HUFFMAN);
+
+        compressingOutputStream.write(data, 0, data.length / 2);
+        compressingOutputStream.flush();
+
+        int firstBlockEnd = byteArrayOutputStream.size();
+
+        compressingOutputStream.write(data, data.length / 2, data.length - data.length / 2);
+        compressingOutputStream.close();
+
+        // Only the lengths and a few bytes of the second block have arrived.
+        byte[] arrived = new byte[firstBlockEnd + 2 * Integer.BYTES + 3];
+        System.arraycopy(byteArrayOutputStream.toByteArray(), 0, arrived, 0, arrived.length);
+
+        InputStream inputStream = new DecompressingInputStream(new ByteArrayInputStream(arrived) {
+            @Override
+            public synchronized int read(byte[] buffer, int offset, int count) {
+                // A socket would wait here for the rest of the block.
+                assertTrue("Read data that hasn't arrived yet.", available() >= count);
+                return super.read(buffer, offset, count);
+            }
+        });
+
+        for (int i = 0; i < data.length / 2; i++) {
+            assertEquals(data[i] & 0xff, inputStream.read());
+        }
+    }
+
+    @Test
+    public void closeAfterFailureTest() throws IOException {
+        final boolean[] closed = new boolean[1];
+
+        OutputStream failingStream = new ByteArrayOutputStream() {
+            @Override
+            public void flush() throws IOException {
+                throw new IOException("Disk full.");
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        CompressingOutputStream compressingOutputStream
+                = new CompressingOutputStream(failingStream, Algorithms.HUFFMAN);
+
+        compressingOutputStream.write(1);
+
+        try {
+            compressingOutputStream.close();
+            fail();
+        } catch (IOException ex) {
+            // The stream underneath must be closed all the same.
+            assertTrue(closed[0]);
+        }
+    }
+
+    @Test
+    public void streamToFileTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/stream.file.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/stream.file.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/stream.file.DECOMPRESSED");
+
+        // Compressed as a stream, decompressed as a file.
+        try (CompressingOutputStream compressingOutputStream
+                     = new CompressingOutputStream(new FileOutputStream(compressedFile), Algorithms.HUFFMAN)) {
+            compressingOutputStream.write(Files.readAllBytes(textFile.toPath()));
+        }
+
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
+
+    @Test
+    public void fileToStreamTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/file.stream.txt");
+        File huffmanFile = new File(tempFolder.getRoot() + "/file.stream.huffman.COMPRESSED");
+        File lzwFile = new File(tempFolder.getRoot() + "/file.stream.lzw.COMPRESSED");
+
+        byte[] data = Files.readAllBytes(textFile.toPath());
+
+        // Compressed as a file, decompressed as a stream.
+        Huffman huffman = new Huffman(textFile, huffmanFile);
+        huffman.setMode(HuffmanModes.INTERLEAVED);
+        huffman.setBlockSize(1000);
+        assertTrue(huffman.compress());
+
+        LZW lzw = new LZW(textFile, lzwFile);
+        lzw.setChunkSize(1001);
+        assertTrue(lzw.compress());
+
+        assertArrayEquals(data, decompress(Files.readAllBytes(huffmanFile.toPath())));
+        assertArrayEquals(data, decompress(Files.readAllBytes(lzwFile.toPath())));
+    }
+
+    @Test(expected = IOException.class)
+    public void singleStreamFormatTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/stream.static.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/stream.static.COMPRESSED");
+
+        // The static mode can't be split into blocks, so it can't be streamed.
+        assertTrue(new Huffman(textFile, compressedFile).compress());
+
+        new DecompressingInputStream(new FileInputStream(compressedFile)).close();
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedStreamTest() throws IOException {
+        File file = _generic.generateTextFile(tempFolder.getRoot() + "/stream.cut.txt");
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        byte[] compressedData = compress(data, Algorithms.HUFFMAN);
+
+        byte[] truncatedData = new byte[compressedData.length / 2];
+        System.arraycopy(compressedData, 0, truncatedData, 0, truncatedData.length);
+
+        decompress(truncatedData);
+    }
+
+    /**
+     * Compresses the data, writing it into the stream in pieces of different sizes.
+     *
+     * @param data      The data to compress.
+     * @param algorithm The algorithm to use.
+     * @return The compressed data.
+     * @throws IOException If the stream fails.
+     */
+    private byte[] compress(byte[] data, Algorithms algorithm) throws IOException {
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        try (CompressingOutputStream compressingOutputStream
+                     = new CompressingOutputStream(byteArrayOutputStream, algorithm)) {
+            writeInPieces(data, compressingOutputStream);
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Compresses the data with Huffman in the given mode, writing it into the stream in
+     * pieces of different sizes.
+     *
+     * @param data The data to compress.
+     * @param mode The mode to use.
+     * @return The compressed data.
+     * @throws IOException If the stream fails.
+     */
+    private byte[] compress(byte[] data, HuffmanModes mode) throws IOException {
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        try (CompressingOutputStream compressingOutputStream
+                     = new CompressingOutputStream(byteArrayOutputStream, mode)) {
+            writeInPieces(data, compressingOutputStream);
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Writes the data into the stream in pieces of different sizes, some of them single bytes.
+     *
+     * @param data         The data to write.
+     * @param outputStream The stream to write to.
+     * @throws IOException If the stream fails.
+     */
+    private void writeInPieces(byte[] data, OutputStream outputStream) throws IOException {
+
+        int index = 0;
+        int piece = 1;
+
+        while (index < data.length) {
+
+            if (piece == 1) {
+                outputStream.write(data[index]);
+            } else {
+                outputStream.write(data, index, Math.min(piece, data.length - index));
+            }
+
+            index += piece;
+            piece = piece * 7 % 1013;
+        }
+    }
+
+    /**
+     * Decompresses the data through a stream.
+     *
+     * @param compressedData The compressed data.
+     * @return The decompressed data.
+     * @throws IOException If the stream fails.
+     */
+    private byte[] decompress(byte[] compressedData) throws IOException {
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        try (InputStream inputStream = new DecompressingInputStream(new ByteArrayInputStream(compressedData))) {
+
+            byte[] buffer = new byte[777];
+
+            int count;
+
+            while ((count = inputStream.read(buffer, 0, buffer.length)) != -1) {
+                byteArrayOutputStream.write(buffer, 0, count);
+            }
+        }
+
+        return byteArrayOutputStream.toByteArray();
+    }
+}
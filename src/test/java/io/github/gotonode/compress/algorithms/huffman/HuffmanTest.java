@@ -1,6 +1,10 @@
 package io.github.gotonode.compress.algorithms.huffman;
 
 import io.github.gotonode.compress._generic._Generic;
+import io.github.gotonode.compress.enums.HuffmanModes;
+import io.github.gotonode.compress.io.BinaryReadTool;
+import io.github.gotonode.compress.io.BinaryWriteTool;
+import io.github.gotonode.compress.main.Main;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -8,8 +12,13 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
 
 import static junit.framework.TestCase.assertTrue;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
@@ -34,30 +43,21 @@ public class HuffmanTest {
     }
 
     @Test
-    public void huffmanNodeValueTest() {
-        HuffmanNode huffmanNode = new HuffmanNode('a', 0);
-        huffmanNode.setValue('b');
-        assertEquals('b', huffmanNode.getValue());
-    }
-
-    @Test
-    public void huffmanNodeLeftChildTest() {
-
-        HuffmanNode rootHuffmanNode = new HuffmanNode('a', 0);
+    public void huffmanCodeLengthsTest() {
+        long[] weights = new long[Main.ALPHABET_SIZE];
 
-        HuffmanNode leftHuffmanNode = new HuffmanNode('b', null);
-        rootHuffmanNode.setLeftNode(leftHuffmanNode);
-        assertEquals(leftHuffmanNode, rootHuffmanNode.getLeftNode());
-    }
-
-    @Test
-    public void huffmanNodeRightChildTest() {
+        weights['A'] = 1;
+        weights['B'] = 1;
+        weights['C'] = 2;
+        weights['D'] = 4;
 
-        HuffmanNode rootHuffmanNode = new HuffmanNode('a', 0);
+        int[] lengths = HuffmanCanonicalCodes.fromWeights(weights, 0).getLengths();
 
-        HuffmanNode rightHuffmanNode = new HuffmanNode('b', null);
-        rootHuffmanNode.setRightNode(rightHuffmanNode);
-        assertEquals(rightHuffmanNode, rootHuffmanNode.getRightNode());
+        assertEquals(3, lengths['A']);
+        assertEquals(3, lengths['B']);
+        assertEquals(2, lengths['C']);
+        assertEquals(1, lengths['D']);
+        assertEquals(0, lengths['E']);
     }
 
     @Test
@@ -67,12 +67,6 @@ public class HuffmanTest {
         assertFalse(huffman.toString().isEmpty());
     }
 
-    @Test
-    public void huffmanNodeToStringTest() {
-        HuffmanNode huffmanNode = new HuffmanNode('a', 0);
-        assertFalse(huffmanNode.toString().isEmpty());
-    }
-
     @Test
     public void huffmanCompressionTest() {
         File outputFile = new File(tempFolder.getRoot() + "/huffman.COMPRESSED");
@@ -97,6 +91,489 @@ public class HuffmanTest {
         assertTrue(result);
     }
 
+    @Test
+    public void huffmanRoundTripTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.txt.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.txt.DECOMPRESSED");
+
+        assertTrue(new Huffman(textFile, compressedFile).compress());
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
+
+    @Test
+    public void huffmanDecodeTableLongCodesTest() throws IOException {
+
+        // Codes 0, 10, 110, ... make every code one bit longer than the previous
+        // one, so the longest codes have to go through several sub-tables.
+        int[] lengths = new int[Main.ALPHABET_SIZE];
+        long[] codes = new long[Main.ALPHABET_SIZE];
+
+        int characters = 40;
+
+        for (int i = 0; i < characters; i++) {
+            lengths[i] = Math.min(i + 1, characters - 1);
+            codes[i] = i < characters - 1 ? ((1L << (i + 1)) - 2) : ((1L << (characters - 1)) - 1);
+        }
+
+        File codeFile = new File(tempFolder.getRoot() + "/huffman.codes");
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(codeFile);
+
+        for (int i = characters - 1; i >= 0; i--) {
+            for (int bit = lengths[i] - 1; bit >= 0; bit--) {
+                if (((codes[i] >>> bit) & 1) == 1) {
+                    binaryWriteTool.writeOneBit();
+                } else {
+                    binaryWriteTool.writeZeroBit();
+                }
+            }
+        }
+
+        binaryWriteTool.flushAndClose();
+
+        HuffmanDecodeTable decodeTable = new HuffmanDecodeTable(lengths, codes);
+        BinaryReadTool binaryReadTool = new BinaryReadTool(codeFile);
+
+        for (int i = characters - 1; i >= 0; i--) {
+            assertEquals(i, decodeTable.decode(binaryReadTool));
+        }
+
+        binaryReadTool.close();
+    }
+
+    @Test
+    public void huffmanWriteBitsTest() throws IOException {
+
+        File bitsFile = new File(tempFolder.getRoot() + "/huffman.bits");
+        File singleBitsFile = new File(tempFolder.getRoot() + "/huffman.singlebits");
+
+        BinaryWriteTool bitsWriteTool = new BinaryWriteTool(bitsFile);
+        BinaryWriteTool singleBitsWriteTool = new BinaryWriteTool(singleBitsFile);
+
+        // Codes of every length, written both at once and one bit at a time.
+        for (int length = 0; length < Long.SIZE; length++) {
+
+            long code = 0x5DEECE66DL * (length + 1);
+
+            bitsWriteTool.writeBits(code, length);
+
+            for (int bit = length - 1; bit >= 0; bit--) {
+                if (((code >>> bit) & 1) == 1) {
+                    singleBitsWriteTool.writeOneBit();
+                } else {
+                    singleBitsWriteTool.writeZeroBit();
+                }
+            }
+        }
+
+        bitsWriteTool.flushAndClose();
+        singleBitsWriteTool.flushAndClose();
+
+        assertTrue(_generic.checkIdenticalFiles(bitsFile, singleBitsFile));
+    }
+
+    @Test
+    public void huffmanCanonicalCodesTest() {
+        int[] lengths = new int[Main.ALPHABET_SIZE];
+
+        lengths['A'] = 2;
+        lengths['B'] = 1;
+        lengths['C'] = 3;
+        lengths['D'] = 3;
+
+        long[] codes = new HuffmanCanonicalCodes(lengths).getCodes();
+
+        assertEquals(0b0, codes['B']);
+        assertEquals(0b10, codes['A']);
+        assertEquals(0b110, codes['C']);
+        assertEquals(0b111, codes['D']);
+    }
+
+    @Test
+    public void huffmanLengthHeaderTest() throws IOException {
+        File compressedFile = getCompressedFile();
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(compressedFile);
+
+        assertEquals(Main.HUFFMAN_CODE, binaryReadTool.readInt());
+
+        // The length is stored as a 64-bit long.
+        assertEquals(inputFile.length(), binaryReadTool.readLong());
+
+        binaryReadTool.close();
+    }
+
+    @Test
+    public void huffmanEmptyFileTest() throws IOException {
+        File emptyFile = tempFolder.newFile("huffman.empty");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.empty.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.empty.DECOMPRESSED");
+
+        assertTrue(new Huffman(emptyFile, compressedFile).compress());
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(emptyFile, outputFile));
+    }
+
+    @Test
+    public void huffmanLengthLimiterTest() {
+
+        // Fibonacci weights make the deepest possible Huffman tree.
+        long[] weights = new long[Main.ALPHABET_SIZE];
+
+        weights[0] = 1;
+        weights[1] = 1;
+
+        for (int i = 2; i < 40; i++) {
+            weights[i] = weights[i - 1] + weights[i - 2];
+        }
+
+        int[] lengths = HuffmanLengthLimiter.limit(weights, 12);
+
+        double kraftSum = 0.0d;
+
+        for (int i = 0; i < 40; i++) {
+            assertTrue(lengths[i] >= 1 && lengths[i] <= 12);
+            kraftSum += Math.pow(2, -lengths[i]);
+        }
+
+        // The code must still be complete.
+        assertEquals(1.0d, kraftSum, 0.0d);
+        assertEquals(0, lengths[40]);
+    }
+
+    @Test
+    public void huffmanMaxCodeLengthTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.limited.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.limited.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.limited.DECOMPRESSED");
+
+        Huffman huffman = new Huffman(textFile, compressedFile);
+        huffman.setMaxCodeLength(8);
+
+        assertTrue(huffman.compress());
+        assertTrue(huffman.getLengthLimitCost() >= 0.0d);
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
+
+    @Test
+    public void huffmanLengthLimitCostTest() throws IOException {
+        File skewedFile = new File(tempFolder.getRoot() + "/huffman.skewed.bin");
+
+        // Each character is twice as common as the one before it, so the longest
+        // codes would be 15 bits long without a limit.
+        byte[] data = new byte[(1 << 16) - 1];
+        int index = 0;
+
+        for (int character = 0; character < 16; character++) {
+            for (int i = 0; i < 1 << character; i++) {
+                data[index++] = (byte) character;
+            }
+        }
+
+        // Shuffled, so that every context of the order-1 mode is skewed too.
+        Random random = new Random(1337);
+
+        for (int i = data.length - 1; i > 0; i--) {
+            int other = random.nextInt(i + 1);
+            byte temp = data[i];
+            data[i] = data[other];
+            data[other] = temp;
+        }
+
+        Files.write(skewedFile.toPath(), data);
+
+        double staticCost = getLengthLimitCost(skewedFile, HuffmanModes.STATIC, Main.HUFFMAN_BLOCK_SIZE);
+        assertTrue(staticCost > 0.0d);
+
+        // A single block holds all of the data, so the cost is the same as in the static mode.
+        assertEquals(staticCost, getLengthLimitCost(skewedFile, HuffmanModes.BLOCK, data.length), 0.0d);
+
+        assertTrue(getLengthLimitCost(skewedFile, HuffmanModes.INTERLEAVED, 1000) > 0.0d);
+        assertTrue(getLengthLimitCost(skewedFile, HuffmanModes.ORDER1, Main.HUFFMAN_BLOCK_SIZE) > 0.0d);
+
+        // There's no limit in the adaptive mode.
+        assertEquals(0.0d, getLengthLimitCost(skewedFile, HuffmanModes.ADAPTIVE, Main.HUFFMAN_BLOCK_SIZE), 0.0d);
+    }
+
+    @Test
+    public void huffmanAdaptiveRoundTripTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.adaptive.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.adaptive.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.adaptive.DECOMPRESSED");
+
+        Huffman huffman = new Huffman(textFile, compressedFile);
+        huffman.setMode(HuffmanModes.ADAPTIVE);
+
+        assertTrue(huffman.compress());
+
+        // The mode is detected from the file.
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
+
+    @Test
+    public void huffmanBlockRoundTripTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.block.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.block.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.block.DECOMPRESSED");
+
+        Huffman huffman = new Huffman(textFile, compressedFile);
+        huffman.setMode(HuffmanModes.BLOCK);
+
+        // Small blocks, so that the file is split into many of them.
+        huffman.setBlockSize(1000);
+
+        assertTrue(huffman.compress());
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(compressedFile);
+        assertEquals(Main.HUFFMAN_BLOCK_CODE, binaryReadTool.readInt());
+        binaryReadTool.close();
+
+        // The mode is detected from the file.
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
+
+    @Test
+    public void huffmanInterleavedRoundTripTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.interleaved.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.interleaved.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.interleaved.DECOMPRESSED");
+
+        Huffman huffman = new Huffman(textFile, compressedFile);
+        huffman.setMode(HuffmanModes.INTERLEAVED);
+
+        // Not divisible by the number of streams, so that the streams end unevenly.
+        huffman.setBlockSize(1001);
+
+        assertTrue(huffman.compress());
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(compressedFile);
+        assertEquals(Main.HUFFMAN_INTERLEAVED_CODE, binaryReadTool.readInt());
+        binaryReadTool.close();
+
+        // The mode is detected from the file.
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
+
+    @Test
+    public void huffmanInterleavedSmallBlockTest() throws IOException {
+        byte[] data = new byte[40];
+        Arrays.fill(data, (byte) 'A');
+        data[data.length - 1] = 'B';
+
+        HuffmanBlockCoder singleCoder = new HuffmanBlockCoder(0, false);
+        HuffmanBlockCoder interleavedCoder = new HuffmanBlockCoder(0, true);
+
+        // A single stream is just small enough to be coded, but the jump header
+        // of the interleaved format would make the block bigger than when stored.
+        assertEquals(HuffmanBlockCoder.CODED, singleCoder.encode(data, data.length)[0]);
+
+        byte[] compressedData = interleavedCoder.encode(data, data.length);
+
+        assertEquals(HuffmanBlockCoder.STORED, compressedData[0]);
+        assertEquals(data.length + 1, compressedData.length);
+
+        assertArrayEquals(data, interleavedCoder.decode(compressedData, data.length));
+    }
+
+    @Test
+    public void huffmanOrder1RoundTripTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.order1.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.order1.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.order1.DECOMPRESSED");
+
+        Huffman huffman = new Huffman(textFile, compressedFile);
+        huffman.setMode(HuffmanModes.ORDER1);
+
+        assertTrue(huffman.compress());
+
+        // The mode is detected from the file.
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
+
+    @Test
+    public void huffmanStoredRandomDataTest() throws IOException {
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.stored.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.stored.DECOMPRESSED");
+
+        // Both with the weights counted from the data, and with the weights sampled.
+        for (boolean sampling : new boolean[]{false, true}) {
+
+            Huffman huffman = new Huffman(inputFile, compressedFile);
+            huffman.setSampling(sampling);
+
+            assertTrue(huffman.compress());
+
+            // Random data can't be compressed, so it's stored behind the identification
+            // code, the length and the byte that tells the data is stored.
+            assertEquals(inputFile.length() + Integer.BYTES + Long.BYTES + 1, compressedFile.length());
+
+            assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+            assertTrue(_generic.checkIdenticalFiles(inputFile, outputFile));
+        }
+    }
+
+    @Test
+    public void huffmanSamplingRoundTripTest() throws IOException {
+        File largeFile = new File(tempFolder.getRoot() + "/huffman.sampled.bin");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.sampled.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.sampled.DECOMPRESSED");
+
+        // More data than the samples cover, with a character at the very end that no sample sees.
+        byte[] data = new byte[Main.HUFFMAN_SAMPLE_WINDOW_SIZE * Main.HUFFMAN_SAMPLE_WINDOWS + 12345];
+        Arrays.fill(data, (byte) 'A');
+        data[data.length - 1] = 'B';
+
+        Files.write(largeFile.toPath(), data);
+
+        long[] weights = HuffmanSampler.sample(largeFile, data.length);
+
+        assertEquals(1, weights['B']);
+        assertEquals(1, weights[0]);
+
+        Huffman huffman = new Huffman(largeFile, compressedFile);
+        huffman.setSampling(true);
+
+        assertTrue(huffman.compress());
+        assertTrue(compressedFile.length() < data.length / 4);
+
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(largeFile, outputFile));
+    }
+
+    @Test
+    public void huffmanSamplingSmallFileTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.sampled.txt");
+        File sampledFile = new File(tempFolder.getRoot() + "/huffman.sampled.txt.COMPRESSED");
+        File countedFile = new File(tempFolder.getRoot() + "/huffman.counted.txt.COMPRESSED");
+
+        Huffman huffman = new Huffman(textFile, sampledFile);
+        huffman.setSampling(true);
+
+        assertTrue(huffman.compress());
+        assertTrue(new Huffman(textFile, countedFile).compress());
+
+        // A file smaller than the samples is counted in full, giving the exact same result.
+        assertTrue(_generic.checkIdenticalFiles(countedFile, sampledFile));
+    }
+
+    @Test
+    public void huffmanTruncatedFileTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.truncated.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.truncated.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.truncated.DECOMPRESSED");
+
+        byte[] original = Files.readAllBytes(textFile.toPath());
+
+        for (HuffmanModes mode : new HuffmanModes[]{HuffmanModes.STATIC, HuffmanModes.BLOCK}) {
+
+            Huffman huffman = new Huffman(textFile, compressedFile);
+            huffman.setMode(mode);
+            huffman.setBlockSize(1000);
+
+            assertTrue(huffman.compress());
+
+            // Cut off the end of the compressed file.
+            byte[] compressed = Files.readAllBytes(compressedFile.toPath());
+            Files.write(compressedFile.toPath(), Arrays.copyOf(compressed, compressed.length * 3 / 5));
+
+            assertFalse(new Huffman(compressedFile, outputFile).decompress());
+
+            // The output isn't left at its full length, and what's there was decompressed.
+            byte[] output = Files.readAllBytes(outputFile.toPath());
+
+            assertTrue(output.length < original.length);
+            assertArrayEquals(Arrays.copyOf(original, output.length), output);
+        }
+    }
+
+    @Test
+    public void huffmanCorruptedLengthTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/huffman.length.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.length.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.length.DECOMPRESSED");
+
+        Huffman huffman = new Huffman(textFile, compressedFile);
+        huffman.setMode(HuffmanModes.BLOCK);
+
+        assertTrue(huffman.compress());
+
+        // The block mode doesn't need the length from the header, so it can be anything.
+        byte[] compressed = Files.readAllBytes(compressedFile.toPath());
+        ByteBuffer.wrap(compressed).putLong(Integer.BYTES, Long.MAX_VALUE / 2);
+        Files.write(compressedFile.toPath(), compressed);
+
+        // The output file is never made as big as the header says.
+        assertTrue(new Huffman(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
+
+    @Test
+    public void huffmanCorruptedCodeLengthsTest() throws IOException {
+
+        // Three codes of length 1 can't all fit, and two codes of lengths 1 and 2 leave one free.
+        assertFalse(canReadCodeLengths(new int[]{1, 1, 1}));
+        assertFalse(canReadCodeLengths(new int[]{1, 2}));
+
+        assertTrue(canReadCodeLengths(new int[]{1, 2, 2}));
+        assertTrue(canReadCodeLengths(new int[]{1}));
+    }
+
+    /**
+     * Writes a header with the given code lengths for the first characters, and tries to read it back.
+     *
+     * @param lengths The code lengths.
+     * @return True if the header was read, false if it was rejected as corrupted.
+     */
+    private boolean canReadCodeLengths(int[] lengths) throws IOException {
+        File headerFile = new File(tempFolder.getRoot() + "/huffman.lengths");
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(headerFile);
+
+        int lengthWidth = 2;
+
+        binaryWriteTool.write(lengthWidth);
+
+        for (int character = 0; character < Main.ALPHABET_SIZE; character++) {
+            if (character < lengths.length) {
+                binaryWriteTool.writeOneBit();
+                binaryWriteTool.writeBits(lengths[character], lengthWidth);
+            } else {
+                binaryWriteTool.writeZeroBit();
+            }
+        }
+
+        binaryWriteTool.flushAndClose();
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(headerFile);
+
+        try {
+            HuffmanCanonicalCodes.read(binaryReadTool);
+            return true;
+        } catch (IOException ex) {
+            assertEquals("Corrupted file.", ex.getMessage());
+            return false;
+        } finally {
+            binaryReadTool.close();
+        }
+    }
+
     /**
      * This private method returns a Huffman-compressed file for use in tests.
      *
@@ -112,4 +589,22 @@ public class HuffmanTest {
         return outputFile;
     }
 
+    /**
+     * Compresses the file with a code length limit of 8 bits.
+     *
+     * @param file      The file to compress.
+     * @param mode      The mode to compress in.
+     * @param blockSize The size of the blocks in the block modes.
+     * @return How much the limit cost, as a percentage.
+     */
+    private double getLengthLimitCost(File file, HuffmanModes mode, int blockSize) {
+        Huffman huffman = new Huffman(file, new File(file + "." + mode + ".COMPRESSED"));
+        huffman.setMode(mode);
+        huffman.setBlockSize(blockSize);
+        huffman.setMaxCodeLength(8);
+
+        assertTrue(huffman.compress());
+
+        return huffman.getLengthLimitCost();
+    }
 }
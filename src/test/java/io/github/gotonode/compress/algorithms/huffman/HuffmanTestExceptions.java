@@ -1,6 +1,7 @@
 package io.github.gotonode.compress.algorithms.huffman;
 
 import io.github.gotonode.compress._generic._Generic;
+import io.github.gotonode.compress.main.Main;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -8,6 +9,8 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 
 public class HuffmanTestExceptions {
 
@@ -42,5 +45,36 @@ public class HuffmanTestExceptions {
         new Huffman(null, outputFile).compress();
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void maxCodeLengthTooSmallTest() {
+
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.COMPRESSED");
+
+        new Huffman(inputFile, outputFile).setMaxCodeLength(7);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blockSizeIsZeroTest() {
+
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.COMPRESSED");
+
+        new Huffman(inputFile, outputFile).setBlockSize(0);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void oldFormatVersionTest() throws IOException {
+
+        File compressedFile = new File(tempFolder.getRoot() + "/huffman.old.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/huffman.old.DECOMPRESSED");
+
+        new Huffman(inputFile, compressedFile).compress();
+
+        // Make the file look like it was compressed by an older version of the app.
+        byte[] compressed = Files.readAllBytes(compressedFile.toPath());
+        ByteBuffer.wrap(compressed).putInt(Main.HUFFMAN_OLD_CODE);
+        Files.write(compressedFile.toPath(), compressed);
+
+        new Huffman(compressedFile, outputFile).decompress();
+    }
 
 }
@@ -1,6 +1,7 @@
 package io.github.gotonode.compress.algorithms.lzw;
 
 import io.github.gotonode.compress._generic._Generic;
+import io.github.gotonode.compress.main.Main;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -8,8 +9,10 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 
-import static junit.framework.TestCase.assertNotNull;
 import static org.junit.Assert.*;
 
 public class LZWTest {
@@ -33,101 +36,293 @@ public class LZWTest {
     }
 
     @Test
-    public void lzwNodeNotNullTest() {
-        LZWNode lzwNode = new LZWNode();
-        assertNotNull(lzwNode);
+    public void lzwDictionaryTest() {
+        LZWDictionary lzwDictionary = new LZWDictionary(Main.CODEWORD_COUNT);
+
+        assertEquals(LZWDictionary.NOT_FOUND, lzwDictionary.get('a', 'b'));
+
+        lzwDictionary.add('a', 'b', 257);
+        lzwDictionary.add(257, 'c', 258);
+
+        assertEquals(257, lzwDictionary.get('a', 'b'));
+        assertEquals(258, lzwDictionary.get(257, 'c'));
+        assertEquals(LZWDictionary.NOT_FOUND, lzwDictionary.get('b', 'a'));
     }
 
     @Test
-    public void lzwTreeValueTest() {
-        LZWTree lzwTree = new LZWTree();
-        lzwTree.add('a', 0);
-        int value = lzwTree.get("a");
-        assertEquals(0, value);
+    public void lzwDictionaryFullTest() {
+        LZWDictionary lzwDictionary = new LZWDictionary(Main.CODEWORD_COUNT);
+
+        // Fill the dictionary up completely, with plenty of keys that collide.
+        for (int codeword = Main.ALPHABET_SIZE + 1; codeword < Main.CODEWORD_COUNT; codeword++) {
+            lzwDictionary.add(codeword - 1, codeword & 0xff, codeword);
+        }
+
+        for (int codeword = Main.ALPHABET_SIZE + 1; codeword < Main.CODEWORD_COUNT; codeword++) {
+            assertEquals(codeword, lzwDictionary.get(codeword - 1, codeword & 0xff));
+        }
     }
 
     @Test
-    public void lzwTreePrefixTest() {
-        LZWTree lzwTree = new LZWTree();
-        lzwTree.add("a", 0);
-        String prefix = lzwTree.prefix("a");
-        assertEquals("a", prefix);
+    public void lzwToStringTest() {
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.COMPRESSED");
+        LZW lzw = new LZW(inputFile, outputFile);
+        assertFalse(lzw.toString().isEmpty());
     }
 
     @Test
-    public void lzwTreeZeroLengthNullTest() {
-        LZWTree lzwTree = new LZWTree();
-        assertNull(lzwTree.prefix(""));
+    public void lzwCompressionTest() {
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.COMPRESSED");
+
+        LZW lzw = new LZW(inputFile, outputFile);
+
+        boolean result = lzw.compress();
+
+        assertTrue(result);
     }
 
     @Test
-    public void lzwTreeEmptyTest() {
-        LZWTree lzwTree = new LZWTree();
-        assertEquals(-1, lzwTree.get("a"));
+    public void lzwDecompressionTest() {
+        File compressedFile = getCompressedFile();
+
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.DECOMPRESSED");
+
+        LZW lzw = new LZW(compressedFile, outputFile);
+
+        boolean result = lzw.decompress();
+
+        assertTrue(result);
     }
 
     @Test
-    public void lzwTreeForestTest() {
-        LZWTree lzwTree = new LZWTree();
+    public void lzwEmptyFileTest() throws IOException {
+        File emptyFile = tempFolder.newFile("lzw.empty");
+        File compressedFile = new File(tempFolder.getRoot() + "/lzw.empty.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.empty.DECOMPRESSED");
 
-        Character firstChar = null;
+        assertTrue(new LZW(emptyFile, compressedFile).compress());
+        assertTrue(new LZW(compressedFile, outputFile).decompress());
 
-        for (int i = 0; i < 1000; i++) {
-            char c = _generic.getRandomChar();
+        assertTrue(_generic.checkIdenticalFiles(emptyFile, outputFile));
+    }
 
-            if (firstChar == null) {
-                firstChar = c;
-            }
+    @Test
+    public void lzwRoundTripTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/lzw.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/lzw.txt.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.txt.DECOMPRESSED");
 
-            lzwTree.add(c, _generic.getRandomInt());
-        }
+        assertTrue(new LZW(textFile, compressedFile).compress());
+        assertTrue(new LZW(compressedFile, outputFile).decompress());
 
-        String prefix = lzwTree.prefix(firstChar.toString());
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
+    }
 
-        assertEquals(1, prefix.length());
+    @Test
+    public void lzwCodewordWidthTest() {
+        assertEquals(9, LZWCoder.getCodewordWidth(0, 16));
+        assertEquals(9, LZWCoder.getCodewordWidth(254, 16));
+        assertEquals(10, LZWCoder.getCodewordWidth(255, 16));
+        assertEquals(16, LZWCoder.getCodewordWidth(100000, 16));
+        assertEquals(12, LZWCoder.getCodewordWidth(100000, 12));
     }
 
     @Test
-    public void lzwToStringTest() {
-        File outputFile = new File(tempFolder.getRoot() + "/lzw.COMPRESSED");
-        LZW lzw = new LZW(inputFile, outputFile);
-        assertFalse(lzw.toString().isEmpty());
+    public void lzwMaxCodewordWidthRoundTripTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/lzw.narrow.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/lzw.narrow.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.narrow.DECOMPRESSED");
+
+        // With 9-bit codewords, the dictionary fills up almost right away.
+        LZW lzw = new LZW(textFile, compressedFile);
+        lzw.setMaxCodewordWidth(Main.CODEWORD_MIN_WIDTH);
+
+        assertTrue(lzw.compress());
+        assertTrue(new LZW(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
     }
 
     @Test
-    public void lzwNodeToStringTest() {
-        LZWNode lzwNode = new LZWNode();
-        assertFalse(lzwNode.toString().isEmpty());
+    public void lzwRatioMonitorTest() {
+        LZWRatioMonitor lzwRatioMonitor = new LZWRatioMonitor(1000);
+
+        // The first call starts the first window, and the first full window is the best one.
+        assertFalse(lzwRatioMonitor.isDegraded(0, 0));
+        assertFalse(lzwRatioMonitor.isDegraded(999, 3000));
+        assertFalse(lzwRatioMonitor.isDegraded(1000, 4000));
+
+        // A little bit worse is fine, but a lot worse is not.
+        assertFalse(lzwRatioMonitor.isDegraded(2000, 8400));
+        assertTrue(lzwRatioMonitor.isDegraded(3000, 14400));
+
+        // After that, everything starts over.
+        assertFalse(lzwRatioMonitor.isDegraded(3000, 14400));
+        assertFalse(lzwRatioMonitor.isDegraded(4000, 22400));
     }
 
     @Test
-    public void lzwTreeToStringTest() {
-        LZWTree lzwTree = new LZWTree();
-        assertFalse(lzwTree.toString().isEmpty());
+    public void lzwClearRoundTripTest() throws IOException {
+        File driftingFile = new File(tempFolder.getRoot() + "/lzw.drifting.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/lzw.drifting.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.drifting.DECOMPRESSED");
+
+        // The first half uses upper case letters and the second half lower case ones,
+        // so the full dictionary stops matching the data halfway through.
+        byte[] data = new byte[8 * Main.LZW_RATIO_WINDOW];
+
+        for (int i = 0; i < data.length; i++) {
+            char character = _generic.getRandomChar();
+            data[i] = (byte) (i < data.length / 2 ? character : Character.toLowerCase(character));
+        }
+
+        Files.write(driftingFile.toPath(), data);
+
+        LZW lzw = new LZW(driftingFile, compressedFile);
+        lzw.setMaxCodewordWidth(Main.CODEWORD_MIN_WIDTH + 1);
+
+        assertTrue(lzw.compress());
+        assertTrue(new LZW(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(driftingFile, outputFile));
     }
 
     @Test
-    public void lzwCompressionTest() {
-        File outputFile = new File(tempFolder.getRoot() + "/lzw.COMPRESSED");
+    public void lzwChunkedRoundTripTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/lzw.chunked.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/lzw.chunked.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.chunked.DECOMPRESSED");
 
-        LZW lzw = new LZW(inputFile, outputFile);
+        // A chunk size that doesn't divide the file evenly, so the last chunk is shorter.
+        LZW lzw = new LZW(textFile, compressedFile);
+        lzw.setChunkSize(1001);
 
-        boolean result = lzw.compress();
+        assertTrue(lzw.compress());
 
-        assertTrue(result);
+        // The format is detected from the file.
+        assertTrue(new LZW(compressedFile, outputFile).decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(textFile, outputFile));
     }
 
     @Test
-    public void lzwDecompressionTest() {
-        File compressedFile = getCompressedFile();
+    public void lzwTruncatedFileTest() throws IOException {
+        File textFile = _generic.generateTextFile(tempFolder.getRoot() + "/lzw.truncated.txt");
+        File compressedFile = new File(tempFolder.getRoot() + "/lzw.truncated.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.truncated.DECOMPRESSED");
 
-        File outputFile = new File(tempFolder.getRoot() + "/lzw.DECOMPRESSED");
+        byte[] original = Files.readAllBytes(textFile.toPath());
 
-        LZW lzw = new LZW(compressedFile, outputFile);
+        for (int chunkSize : new int[]{0, 1001}) {
 
-        boolean result = lzw.decompress();
+            LZW lzw = new LZW(textFile, compressedFile);
+            lzw.setChunkSize(chunkSize);
 
-        assertTrue(result);
+            assertTrue(lzw.compress());
+
+            // Cut off the end of the compressed file.
+            byte[] compressed = Files.readAllBytes(compressedFile.toPath());
+            Files.write(compressedFile.toPath(), Arrays.copyOf(compressed, compressed.length * 3 / 5));
+
+            assertFalse(new LZW(compressedFile, outputFile).decompress());
+
+            // The output isn't left at its full length, and what's there was decompressed.
+            byte[] output = Files.readAllBytes(outputFile.toPath());
+
+            assertTrue(output.length < original.length);
+            assertArrayEquals(Arrays.copyOf(original, output.length), output);
+        }
+    }
+
+    @Test
+    public void lzwPresetDictionaryTest() throws IOException {
+        File sampleFile = new File(tempFolder.getRoot() + "/lzw.preset.sample");
+        File presetFile = new File(tempFolder.getRoot() + "/lzw.preset");
+        File payloadFile = new File(tempFolder.getRoot() + "/lzw.preset.payload");
+        File plainFile = new File(tempFolder.getRoot() + "/lzw.preset.plain.COMPRESSED");
+        File compressedFile = new File(tempFolder.getRoot() + "/lzw.preset.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.preset.DECOMPRESSED");
+
+        Files.write(sampleFile.toPath(), getStatements(500).getBytes(StandardCharsets.US_ASCII));
+        Files.write(payloadFile.toPath(), getStatements(2).getBytes(StandardCharsets.US_ASCII));
+
+        LZWPresetDictionary presetDictionary = LZWPresetDictionary.train(sampleFile, 1000);
+
+        assertEquals(1000, presetDictionary.getSize());
+
+        // A saved preset is the same preset once it's loaded.
+        presetDictionary.save(presetFile);
+        presetDictionary = LZWPresetDictionary.load(presetFile);
+
+        assertEquals(1000, presetDictionary.getSize());
+
+        assertTrue(new LZW(payloadFile, plainFile).compress());
+
+        LZW lzw = new LZW(payloadFile, compressedFile);
+        lzw.setPresetDictionary(presetDictionary);
+
+        assertTrue(lzw.compress());
+        assertTrue(compressedFile.length() < plainFile.length());
+
+        // Without the preset, the file can't be decompressed.
+        assertFalse(new LZW(compressedFile, outputFile).decompress());
+
+        lzw = new LZW(compressedFile, outputFile);
+        lzw.setPresetDictionary(presetDictionary);
+
+        assertTrue(lzw.decompress());
+
+        assertTrue(_generic.checkIdenticalFiles(payloadFile, outputFile));
+    }
+
+    @Test
+    public void lzwCorruptedPresetTest() throws IOException {
+        File sampleFile = new File(tempFolder.getRoot() + "/lzw.corrupted.sample");
+        File presetFile = new File(tempFolder.getRoot() + "/lzw.corrupted.preset");
+
+        Files.write(sampleFile.toPath(), getStatements(100).getBytes(StandardCharsets.US_ASCII));
+
+        LZWPresetDictionary.train(sampleFile, 100).save(presetFile);
+
+        byte[] preset = Files.readAllBytes(presetFile.toPath());
+
+        // Cut short, and with a string built on a string after it.
+        byte[] truncatedPreset = Arrays.copyOf(preset, preset.length / 2);
+        byte[] reorderedPreset = preset.clone();
+        reorderedPreset[2 * Integer.BYTES] = (byte) 0xff;
+
+        for (byte[] corruptedPreset : new byte[][]{truncatedPreset, reorderedPreset, new byte[3]}) {
+
+            Files.write(presetFile.toPath(), corruptedPreset);
+
+            try {
+                LZWPresetDictionary.load(presetFile);
+                fail();
+            } catch (IOException ex) {
+                assertEquals("Corrupted file.", ex.getMessage());
+            }
+
+            // The file was closed, so it can be replaced right away (even on Windows).
+            assertTrue(presetFile.delete());
+        }
+    }
+
+    /**
+     * Creates SQL statements that look alike, for use in tests.
+     *
+     * @param count How many statements to create.
+     * @return The statements.
+     */
+    private String getStatements(int count) {
+        StringBuilder statements = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            statements.append("INSERT INTO cities (name, population) VALUES ('")
+                    .append(_generic.getRandomChar()).append(_generic.getRandomChar())
+                    .append("', ").append(Math.abs(_generic.getRandomInt() % 100000)).append(");\n");
+        }
+
+        return statements.toString();
     }
 
     /**
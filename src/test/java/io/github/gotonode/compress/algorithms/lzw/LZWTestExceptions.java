@@ -1,6 +1,7 @@
 package io.github.gotonode.compress.algorithms.lzw;
 
 import io.github.gotonode.compress._generic._Generic;
+import io.github.gotonode.compress.main.Main;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -8,6 +9,8 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 
 public class LZWTestExceptions {
 
@@ -42,4 +45,36 @@ public class LZWTestExceptions {
         new LZW(null, outputFile).compress();
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void codewordWidthTooLargeTest() {
+
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.COMPRESSED");
+
+        new LZW(inputFile, outputFile).setMaxCodewordWidth(17);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void chunkSizeIsNegativeTest() {
+
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.COMPRESSED");
+
+        new LZW(inputFile, outputFile).setChunkSize(-1);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void oldFormatVersionTest() throws IOException {
+
+        File compressedFile = new File(tempFolder.getRoot() + "/lzw.old.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/lzw.old.DECOMPRESSED");
+
+        new LZW(inputFile, compressedFile).compress();
+
+        // Make the file look like it was compressed by an older version of the app.
+        byte[] compressed = Files.readAllBytes(compressedFile.toPath());
+        ByteBuffer.wrap(compressed).putInt(Main.LZW_OLD_CODE);
+        Files.write(compressedFile.toPath(), compressed);
+
+        new LZW(compressedFile, outputFile).decompress();
+    }
+
 }
@@ -0,0 +1,119 @@
+package io.github.gotonode.compress.app;
+
+import io.github.gotonode.compress._generic._Generic;
+import io.github.gotonode.compress.io.IO;
+import io.github.gotonode.compress.ui.UiController;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AppTest {
+
+    private static TemporaryFolder tempFolder;
+    private _Generic _generic;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        tempFolder = new TemporaryFolder();
+        tempFolder.create();
+    }
+
+    @Before
+    public void before() {
+        _generic = new _Generic();
+    }
+
+    @Test
+    public void presetDictionaryTest() throws IOException {
+        File sampleFile = new File(tempFolder.getRoot() + "/app.sample.sql");
+        File payloadFile = new File(tempFolder.getRoot() + "/app.payload.sql");
+        File presetFile = new File(tempFolder.getRoot() + "/app.preset");
+        File plainFile = new File(tempFolder.getRoot() + "/app.plain.COMPRESSED");
+        File compressedFile = new File(tempFolder.getRoot() + "/app.preset.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/app.preset.DECOMPRESSED");
+
+        Files.write(sampleFile.toPath(), getStatements(500).getBytes(StandardCharsets.US_ASCII));
+        Files.write(payloadFile.toPath(), getStatements(2).getBytes(StandardCharsets.US_ASCII));
+
+        // Train and save a preset, compress with and without it, and decompress with it.
+        // An empty answer keeps the default.
+        run("P", sampleFile, "", presetFile,
+                "L", payloadFile, plainFile, "", "", "",
+                "L", payloadFile, compressedFile, presetFile, "", "",
+                "D", compressedFile, presetFile, outputFile,
+                "E");
+
+        assertTrue(presetFile.exists());
+        assertTrue(compressedFile.length() < plainFile.length());
+
+        assertTrue(_generic.checkIdenticalFiles(payloadFile, outputFile));
+    }
+
+    @Test
+    public void wrongPresetDictionaryTest() throws IOException {
+        File sampleFile = new File(tempFolder.getRoot() + "/app.wrong.sql");
+        File otherSampleFile = new File(tempFolder.getRoot() + "/app.other.sql");
+        File presetFile = new File(tempFolder.getRoot() + "/app.wrong.preset");
+        File otherPresetFile = new File(tempFolder.getRoot() + "/app.other.preset");
+        File compressedFile = new File(tempFolder.getRoot() + "/app.wrong.COMPRESSED");
+        File outputFile = new File(tempFolder.getRoot() + "/app.wrong.DECOMPRESSED");
+
+        Files.write(sampleFile.toPath(), getStatements(500).getBytes(StandardCharsets.US_ASCII));
+        Files.write(otherSampleFile.toPath(), getStatements(500).getBytes(StandardCharsets.US_ASCII));
+
+        // A preset that isn't the one the file was compressed with is turned down,
+        // before the output file is even asked for.
+        run("P", sampleFile, "", presetFile,
+                "P", otherSampleFile, "", otherPresetFile,
+                "L", sampleFile, compressedFile, presetFile, "", "",
+                "D", compressedFile, otherPresetFile,
+                "D", compressedFile, sampleFile,
+                "E");
+
+        assertTrue(compressedFile.exists());
+        assertFalse(outputFile.exists());
+    }
+
+    /**
+     * Runs the app, answering its questions with the given lines.
+     *
+     * @param lines The answers, in order. Files are answered with their paths.
+     */
+    private void run(Object... lines) {
+        StringBuilder input = new StringBuilder();
+
+        for (Object line : lines) {
+            input.append(line).append('\n');
+        }
+
+        new App(new UiController(new Scanner(input.toString())), new IO()).run();
+    }
+
+    /**
+     * Creates SQL statements that look alike, for use in tests.
+     *
+     * @param count How many statements to create.
+     * @return The statements.
+     */
+    private String getStatements(int count) {
+        StringBuilder statements = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            statements.append("INSERT INTO cities (name, population) VALUES ('")
+                    .append(_generic.getRandomChar()).append(_generic.getRandomChar())
+                    .append("', ").append(Math.abs(_generic.getRandomInt() % 100000)).append(");\n");
+        }
+
+        return statements.toString();
+    }
+}
@@ -2,6 +2,9 @@ package io.github.gotonode.compress.benchmarking;
 
 import io.github.gotonode.compress._generic._Generic;
 import io.github.gotonode.compress.enums.Algorithms;
+import io.github.gotonode.compress.enums.ProfilerCounters;
+import io.github.gotonode.compress.enums.ProfilerPhases;
+import io.github.gotonode.compress.utils.PhaseProfiler;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -10,6 +13,8 @@ import org.junit.rules.TemporaryFolder;
 import java.io.File;
 import java.io.IOException;
 
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
 import static junit.framework.TestCase.assertTrue;
 
 public class BenchmarkTest {
@@ -47,4 +52,43 @@ public class BenchmarkTest {
         assertTrue(benchmarkResult.getCompressionTime() >= 0);
         assertTrue(benchmarkResult.getDecompressionTime() >= 0);
     }
+
+    @Test
+    public void huffmanBenchmarkingProfileTest() {
+        BenchmarkResult benchmarkResult = Benchmark.runBenchmark(inputFile, Algorithms.HUFFMAN);
+
+        PhaseProfiler compressionProfile = benchmarkResult.getCompressionProfile();
+        assertTrue(compressionProfile.getTime(ProfilerPhases.HISTOGRAM) > 0);
+        assertTrue(compressionProfile.getTime(ProfilerPhases.IO) > 0);
+
+        assertTrue(benchmarkResult.getDecompressionProfile().getTotalTime() > 0);
+    }
+
+    @Test
+    public void lzwBenchmarkingProfileTest() {
+        BenchmarkResult benchmarkResult = Benchmark.runBenchmark(inputFile, Algorithms.LZW);
+
+        PhaseProfiler compressionProfile = benchmarkResult.getCompressionProfile();
+        PhaseProfiler decompressionProfile = benchmarkResult.getDecompressionProfile();
+
+        assertTrue(compressionProfile.getTime(ProfilerPhases.ENCODE) > 0);
+        assertTrue(decompressionProfile.getTime(ProfilerPhases.DECODE) > 0);
+        assertTrue(compressionProfile.getCount(ProfilerCounters.DICTIONARY_LOOKUPS) > 0);
+
+        // Both sides see the same codewords and build the same dictionary.
+        assertEquals(compressionProfile.getCount(ProfilerCounters.CODEWORDS),
+                decompressionProfile.getCount(ProfilerCounters.CODEWORDS));
+        assertEquals(compressionProfile.getCount(ProfilerCounters.DICTIONARY_ADDITIONS),
+                decompressionProfile.getCount(ProfilerCounters.DICTIONARY_ADDITIONS));
+    }
+
+    @Test
+    public void benchmarkingCleanupTest() {
+        Benchmark.runBenchmark(inputFile, Algorithms.HUFFMAN);
+
+        // Only the original file is left.
+        assertTrue(inputFile.exists());
+        assertFalse(new File(inputFile.getAbsolutePath() + ".COMPRESSED").exists());
+        assertFalse(new File(inputFile.getAbsolutePath() + ".DECOMPRESSED").exists());
+    }
 }
@@ -36,6 +36,12 @@ public class CommandsTest {
         assertEquals('B', commands.getCommand());
     }
 
+    @Test
+    public void commandsTrainPresetTest() {
+        Commands commands = Commands.TRAIN_PRESET;
+        assertEquals('P', commands.getCommand());
+    }
+
     @Test
     public void commandsExitTest() {
         Commands commands = Commands.EXIT;
@@ -0,0 +1,47 @@
+package io.github.gotonode.compress.enums;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HuffmanModesTest {
+
+    @Test
+    public void huffmanModesStaticTest() {
+        HuffmanModes huffmanModes = HuffmanModes.STATIC;
+        assertEquals("Static", huffmanModes.getName());
+    }
+
+    @Test
+    public void huffmanModesAdaptiveTest() {
+        HuffmanModes huffmanModes = HuffmanModes.ADAPTIVE;
+        assertEquals("Adaptive", huffmanModes.getName());
+    }
+
+    @Test
+    public void huffmanModesBlockTest() {
+        HuffmanModes huffmanModes = HuffmanModes.BLOCK;
+        assertEquals("Block", huffmanModes.getName());
+    }
+
+    @Test
+    public void huffmanModesInterleavedTest() {
+        HuffmanModes huffmanModes = HuffmanModes.INTERLEAVED;
+        assertEquals("Interleaved", huffmanModes.getName());
+    }
+
+    @Test
+    public void huffmanModesOrder1Test() {
+        HuffmanModes huffmanModes = HuffmanModes.ORDER1;
+        assertEquals("Order-1", huffmanModes.getName());
+    }
+
+    @Test
+    public void huffmanModesCommandTest() {
+        assertEquals('S', HuffmanModes.STATIC.getCommand());
+        assertEquals('A', HuffmanModes.ADAPTIVE.getCommand());
+        assertEquals('B', HuffmanModes.BLOCK.getCommand());
+        assertEquals('I', HuffmanModes.INTERLEAVED.getCommand());
+        assertEquals('O', HuffmanModes.ORDER1.getCommand());
+    }
+}
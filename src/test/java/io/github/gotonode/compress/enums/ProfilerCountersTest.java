@@ -0,0 +1,20 @@
+package io.github.gotonode.compress.enums;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProfilerCountersTest {
+
+    @Test
+    public void profilerCountersDictionaryLookupsTest() {
+        ProfilerCounters profilerCounters = ProfilerCounters.DICTIONARY_LOOKUPS;
+        assertEquals("Dictionary lookups", profilerCounters.getName());
+    }
+
+    @Test
+    public void profilerCountersCodewordsTest() {
+        ProfilerCounters profilerCounters = ProfilerCounters.CODEWORDS;
+        assertEquals("Codewords", profilerCounters.getName());
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.gotonode.compress.enums;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProfilerPhasesTest {
+
+    @Test
+    public void profilerPhasesHistogramTest() {
+        ProfilerPhases profilerPhases = ProfilerPhases.HISTOGRAM;
+        assertEquals("Histogram", profilerPhases.getName());
+    }
+
+    @Test
+    public void profilerPhasesTreeBuildTest() {
+        ProfilerPhases profilerPhases = ProfilerPhases.TREE_BUILD;
+        assertEquals("Tree build", profilerPhases.getName());
+    }
+
+    @Test
+    public void profilerPhasesIOTest() {
+        ProfilerPhases profilerPhases = ProfilerPhases.IO;
+        assertEquals("I/O", profilerPhases.getName());
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.gotonode.compress.io;
+
+import io.github.gotonode.compress.main.Main;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BinaryReadToolTest {
+
+    private static final int RANDOM_SEED = 1337;
+
+    // A segment size that doesn't divide anything evenly.
+    private static final int SEGMENT_SIZE = 13;
+
+    private static TemporaryFolder tempFolder;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        tempFolder = new TemporaryFolder();
+        tempFolder.create();
+    }
+
+    @Test
+    public void endOfStreamInCodewordTest() throws IOException {
+        BinaryReadTool binaryReadTool = new BinaryReadTool(new ByteArrayInputStream(new byte[]{0x12, 0x34}));
+
+        assertEquals(0x123, binaryReadTool.readBits(12));
+
+        // Only 4 bits are left, so a 9-bit codeword can't be read.
+        try {
+            binaryReadTool.readBits(9);
+            fail();
+        } catch (IOException ex) {
+            assertEquals("Corrupted file.", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void readIntPaddingTest() throws IOException {
+        BinaryReadTool binaryReadTool = new BinaryReadTool(new ByteArrayInputStream(new byte[]{0x12, 0x34, 0x56}));
+
+        // The stream ends after 3 bytes, so the last byte of the integer is zeros.
+        assertEquals(0x12345600, binaryReadTool.readInt());
+
+        assertFalse(binaryReadTool.streamHasData());
+    }
+
+    @Test
+    public void unalignedReadBytesTest() throws IOException {
+        byte[] data = randomBytes(1000);
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(new ByteArrayInputStream(data));
+
+        assertEquals(bitsAt(data, 0, 3), binaryReadTool.readBits(3));
+
+        byte[] bytes = new byte[500];
+
+        assertEquals(bytes.length, binaryReadTool.readBytes(bytes, bytes.length));
+
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals(bitsAt(data, 3 + i * Main.BITS_IN_A_BYTE, Main.BITS_IN_A_BYTE), bytes[i] & 0xff);
+        }
+
+        // Back at a byte boundary after 5 more bits. The rest runs out early.
+        binaryReadTool.readBits(5);
+
+        bytes = new byte[1000];
+
+        assertEquals(499, binaryReadTool.readBytes(bytes, bytes.length));
+        assertArrayEquals(Arrays.copyOfRange(data, 501, 1000), Arrays.copyOf(bytes, 499));
+    }
+
+    @Test
+    public void bufferBoundaryTest() throws IOException {
+        byte[] data = randomBytes(2 * Main.IO_BUFFER_SIZE + 100);
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(new ByteArrayInputStream(data));
+
+        // Random widths, so that reads of every size straddle the ends of the 64 kB buffer.
+        checkRandomReads(binaryReadTool, data);
+
+        assertTrue(binaryReadTool.streamHasData());
+    }
+
+    @Test
+    public void exactBufferBoundaryTest() throws IOException {
+        byte[] data = randomBytes(Main.IO_BUFFER_SIZE + Long.BYTES);
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(new ByteArrayInputStream(data));
+
+        byte[] bytes = new byte[Main.IO_BUFFER_SIZE - 2];
+        binaryReadTool.readBytes(bytes, bytes.length);
+
+        // The long starts 2 bytes before the end of the first buffer.
+        long expected = (bitsAt(data, (Main.IO_BUFFER_SIZE - 2L) * Main.BITS_IN_A_BYTE, Integer.SIZE) << Integer.SIZE)
+                | bitsAt(data, (Main.IO_BUFFER_SIZE + 2L) * Main.BITS_IN_A_BYTE, Integer.SIZE);
+
+        assertEquals(expected, binaryReadTool.readLong());
+
+        assertEquals(bitsAt(data, (Main.IO_BUFFER_SIZE + 6L) * Main.BITS_IN_A_BYTE, 16), binaryReadTool.readBits(16));
+        assertFalse(binaryReadTool.streamHasData());
+    }
+
+    @Test
+    public void mappedSegmentBoundaryTest() throws IOException {
+        byte[] data = randomBytes(1000);
+        File file = writeFile("/read.segments.bin", data);
+
+        // Tiny segments, so that reads straddle the ends of the segments all the time.
+        BinaryReadTool binaryReadTool = new BinaryReadTool(file, SEGMENT_SIZE);
+
+        byte[] bytes = new byte[SEGMENT_SIZE - 3];
+        binaryReadTool.readBytes(bytes, bytes.length);
+
+        // From 3 bytes before the end of the first segment into the second one.
+        assertEquals(bitsAt(data, (SEGMENT_SIZE - 3L) * Main.BITS_IN_A_BYTE, Integer.SIZE),
+                binaryReadTool.readInt() & 0xffffffffL);
+
+        // 7 bits, and then 13 bits across the end of the second segment.
+        long position = (SEGMENT_SIZE + 1L) * Main.BITS_IN_A_BYTE;
+
+        assertEquals(bitsAt(data, position, 7), binaryReadTool.readBits(7));
+        assertEquals(bitsAt(data, position + 7, Long.SIZE / 2 + 13), binaryReadTool.readBits(Long.SIZE / 2 + 13));
+
+        position += 7 + Long.SIZE / 2 + 13;
+
+        // A long that spans two segment ends.
+        assertEquals(bitsAt(data, position, Integer.SIZE) << Integer.SIZE
+                | bitsAt(data, position + Integer.SIZE, Integer.SIZE), binaryReadTool.readLong());
+
+        binaryReadTool.close();
+
+        binaryReadTool = new BinaryReadTool(file, SEGMENT_SIZE);
+        checkRandomReads(binaryReadTool, data);
+        binaryReadTool.close();
+    }
+
+    @Test
+    public void mappedResetTest() throws IOException {
+        byte[] data = randomBytes(1000);
+        File file = writeFile("/read.reset.bin", data);
+
+        BinaryReadTool binaryReadTool = new BinaryReadTool(file, SEGMENT_SIZE);
+
+        // Well past the first segment, which has to be used again after the reset.
+        byte[] bytes = new byte[5 * SEGMENT_SIZE + 3];
+        binaryReadTool.readBytes(bytes, bytes.length);
+        binaryReadTool.readBits(5);
+
+        binaryReadTool.reset();
+
+        assertEquals(bitsAt(data, 0, 3), binaryReadTool.readBits(3));
+
+        // All of the whole bytes that follow the 3 bits.
+        bytes = new byte[data.length - 1];
+
+        assertEquals(bytes.length, binaryReadTool.readBytes(bytes, bytes.length));
+
+        for (int i = 0; i < data.length - 1; i++) {
+            assertEquals(bitsAt(data, 3 + i * (long) Main.BITS_IN_A_BYTE, Main.BITS_IN_A_BYTE), bytes[i] & 0xff);
+        }
+
+        binaryReadTool.close();
+    }
+
+    @Test
+    public void mappedReadBytesTest() throws IOException {
+        byte[] data = randomBytes(1000);
+        File file = writeFile("/read.mapped.bin", data);
+
+        // The default segments, and the tiny ones.
+        for (BinaryReadTool binaryReadTool
+                : new BinaryReadTool[]{new BinaryReadTool(file, true), new BinaryReadTool(file, SEGMENT_SIZE)}) {
+
+            byte[] bytes = new byte[data.length + 1];
+
+            assertEquals(data.length, binaryReadTool.readBytes(bytes, bytes.length));
+            assertArrayEquals(data, Arrays.copyOf(bytes, data.length));
+            assertFalse(binaryReadTool.streamHasData());
+
+            binaryReadTool.close();
+        }
+    }
+
+    /**
+     * Reads the data with random reads of all kinds, checking each of them, until
+     * fewer than 64 bits are left.
+     *
+     * @param binaryReadTool The reader, at the start of the data.
+     * @param data           The data it reads.
+     * @throws IOException If the reader fails.
+     */
+    private static void checkRandomReads(BinaryReadTool binaryReadTool, byte[] data) throws IOException {
+        Random random = new Random(RANDOM_SEED);
+
+        long position = 0;
+
+        while (position + 64 <= data.length * (long) Main.BITS_IN_A_BYTE) {
+
+            switch (random.nextInt(5)) {
+                case 0:
+                    int count = 1 + random.nextInt(56);
+                    assertEquals(bitsAt(data, position, count), binaryReadTool.readBits(count));
+                    position += count;
+                    break;
+                case 1:
+                    assertEquals(bitsAt(data, position, Integer.SIZE), binaryReadTool.readInt() & 0xffffffffL);
+                    position += Integer.SIZE;
+                    break;
+                case 2:
+                    assertEquals(bitsAt(data, position, Main.BITS_IN_A_BYTE), binaryReadTool.readChar());
+                    position += Main.BITS_IN_A_BYTE;
+                    break;
+                case 3:
+                    // Like the table-driven decoder: look further ahead than what is used.
+                    int peeked = 1 + random.nextInt(Main.HUFFMAN_TABLE_BITS);
+                    int used = 1 + random.nextInt(peeked);
+                    assertEquals(bitsAt(data, position, peeked), binaryReadTool.peekBits(peeked));
+                    binaryReadTool.consumeBits(used);
+                    position += used;
+                    break;
+                default:
+                    assertEquals(bitsAt(data, position, 1) == 1, binaryReadTool.readBool());
+                    position++;
+                    break;
+            }
+        }
+
+    }
+
+    /**
+     * Writes the data into a file in the temporary folder.
+     *
+     * @param name The name of the file.
+     * @param data The data to write.
+     * @return The file.
+     * @throws IOException If the file can't be written.
+     */
+    private static File writeFile(String name, byte[] data) throws IOException {
+        File file = new File(tempFolder.getRoot() + name);
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    /**
+     * Creates random bytes, the same ones every time.
+     *
+     * @param length How many bytes to create.
+     * @return The bytes.
+     */
+    static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(RANDOM_SEED).nextBytes(data);
+        return data;
+    }
+
+    /**
+     * Takes bits out of the data one at a time, to compare against.
+     *
+     * @param data     The data.
+     * @param position The position of the first bit, counting from the highest bit of the first byte.
+     * @param count    How many bits to take (at most 63).
+     * @return The bits, with the first bit as the highest one.
+     */
+    static long bitsAt(byte[] data, long position, int count) {
+        long bits = 0;
+
+        for (long i = position; i < position + count; i++) {
+            int value = data[(int) (i / Main.BITS_IN_A_BYTE)];
+            int shift = (int) (Main.BITS_IN_A_BYTE - 1 - i % Main.BITS_IN_A_BYTE);
+            bits = (bits << 1) | ((value >>> shift) & 1);
+        }
+
+        return bits;
+    }
+}
@@ -0,0 +1,284 @@
+package io.github.gotonode.compress.io;
+
+import io.github.gotonode.compress.main.Main;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BinaryWriteToolTest {
+
+    private static final int RANDOM_SEED = 1337;
+
+    private static TemporaryFolder tempFolder;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        tempFolder = new TemporaryFolder();
+        tempFolder.create();
+    }
+
+    @Test
+    public void mixedWidthWriteBitsTest() throws IOException {
+        Random random = new Random(RANDOM_SEED);
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(byteArrayOutputStream);
+        ReferenceWriter referenceWriter = new ReferenceWriter();
+
+        for (int i = 0; i < 20000; i++) {
+            int count = 1 + random.nextInt(57);
+            long value = random.nextLong();
+
+            binaryWriteTool.writeBits(value, count);
+            referenceWriter.writeBits(value, count);
+        }
+
+        binaryWriteTool.flushAndClose();
+
+        assertArrayEquals(referenceWriter.toByteArray(), byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    public void mixedWriteMethodsTest() throws IOException {
+        Random random = new Random(RANDOM_SEED);
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(byteArrayOutputStream);
+        ReferenceWriter referenceWriter = new ReferenceWriter();
+
+        for (int i = 0; i < 20000; i++) {
+            int value = random.nextInt();
+
+            switch (random.nextInt(6)) {
+                case 0:
+                    binaryWriteTool.writeOneBit();
+                    referenceWriter.writeBits(1, 1);
+                    break;
+                case 1:
+                    binaryWriteTool.writeZeroBit();
+                    referenceWriter.writeBits(0, 1);
+                    break;
+                case 2:
+                    binaryWriteTool.write(value);
+                    referenceWriter.writeBits(value, Main.BITS_IN_A_BYTE);
+                    break;
+                case 3:
+                    binaryWriteTool.writeInt(value);
+                    referenceWriter.writeBits(value, Integer.SIZE);
+                    break;
+                case 4:
+                    binaryWriteTool.writeLong((long) value * value);
+                    referenceWriter.writeBits((long) value * value, Long.SIZE);
+                    break;
+                default:
+                    binaryWriteTool.writeCodeword(value, Main.CODEWORD_WIDTH);
+                    referenceWriter.writeBits(value, Main.CODEWORD_WIDTH);
+                    break;
+            }
+        }
+
+        binaryWriteTool.flushAndClose();
+
+        assertArrayEquals(referenceWriter.toByteArray(), byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    public void unalignedWriteBytesTest() throws IOException {
+        Random random = new Random(RANDOM_SEED);
+
+        byte[] data = new byte[3 * Main.IO_BUFFER_SIZE];
+        random.nextBytes(data);
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(byteArrayOutputStream);
+        ReferenceWriter referenceWriter = new ReferenceWriter();
+
+        int offset = 0;
+
+        for (int bits = 1; bits < Main.BITS_IN_A_BYTE * 3; bits++) {
+
+            // Each run starts at a different bit position, some of them at a byte boundary.
+            binaryWriteTool.writeBits(bits, bits);
+            referenceWriter.writeBits(bits, bits);
+
+            int length = random.nextInt(Main.BYTES_IN_A_KILOBYTE * 8);
+
+            binaryWriteTool.writeBytes(data, offset, length);
+
+            for (int i = offset; i < offset + length; i++) {
+                referenceWriter.writeBits(data[i], Main.BITS_IN_A_BYTE);
+            }
+
+            offset += length;
+        }
+
+        binaryWriteTool.writeString("Compress");
+        referenceWriter.writeString("Compress");
+
+        binaryWriteTool.flushAndClose();
+
+        assertArrayEquals(referenceWriter.toByteArray(), byteArrayOutputStream.toByteArray());
+    }
+
+    @Test
+    public void flushAtBufferBoundaryTest() throws IOException {
+        Random random = new Random(RANDOM_SEED);
+
+        byte[] data = new byte[2 * Main.IO_BUFFER_SIZE + 1];
+        random.nextBytes(data);
+
+        // Exactly a full buffer, and a long that straddles the end of the buffer.
+        // Written into a file, so that the positional writes are tested too.
+        File file = new File(tempFolder.getRoot() + "/write.boundary.bin");
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(file);
+        ReferenceWriter referenceWriter = new ReferenceWriter();
+
+        binaryWriteTool.writeBytes(data, 0, Main.IO_BUFFER_SIZE);
+
+        for (int i = 0; i < Main.IO_BUFFER_SIZE; i++) {
+            referenceWriter.writeBits(data[i], Main.BITS_IN_A_BYTE);
+        }
+
+        for (int i = 0; i < Main.IO_BUFFER_SIZE - 3; i++) {
+            binaryWriteTool.write(data[i]);
+            referenceWriter.writeBits(data[i], Main.BITS_IN_A_BYTE);
+        }
+
+        binaryWriteTool.writeLong(0x0123456789abcdefL);
+        referenceWriter.writeBits(0x0123456789abcdefL, Long.SIZE);
+
+        // A run bigger than the buffer goes past it, while the buffer is partly full.
+        binaryWriteTool.writeBytes(data, 0, data.length);
+
+        for (byte value : data) {
+            referenceWriter.writeBits(value, Main.BITS_IN_A_BYTE);
+        }
+
+        binaryWriteTool.flushAndClose();
+
+        assertArrayEquals(referenceWriter.toByteArray(), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void finalBytePaddingTest() throws IOException {
+        for (int bits = 1; bits <= Long.SIZE + Main.BITS_IN_A_BYTE; bits++) {
+
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            BinaryWriteTool binaryWriteTool = new BinaryWriteTool(byteArrayOutputStream);
+            ReferenceWriter referenceWriter = new ReferenceWriter();
+
+            // All ones, so that the zeros of the padding can be told apart.
+            for (int i = 0; i < bits; i++) {
+                binaryWriteTool.writeOneBit();
+                referenceWriter.writeBits(1, 1);
+            }
+
+            binaryWriteTool.flushAndClose();
+
+            assertArrayEquals(referenceWriter.toByteArray(), byteArrayOutputStream.toByteArray());
+        }
+    }
+
+    @Test
+    public void preallocateTest() throws IOException {
+        byte[] data = new byte[3 * Main.IO_BUFFER_SIZE];
+        new Random(RANDOM_SEED).nextBytes(data);
+
+        File file = new File(tempFolder.getRoot() + "/write.preallocated.bin");
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(file);
+        binaryWriteTool.preallocate(data.length);
+
+        assertEquals(data.length, file.length());
+
+        binaryWriteTool.writeBytes(data, 0, data.length);
+        binaryWriteTool.flushAndClose();
+
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void preallocateShorterTest() throws IOException {
+        File file = new File(tempFolder.getRoot() + "/write.shorter.bin");
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(file);
+        binaryWriteTool.preallocate(1000);
+
+        binaryWriteTool.writeString("Compress");
+        binaryWriteTool.flushAndClose();
+
+        // Less was written than expected, so the rest was cut off.
+        assertArrayEquals("Compress".getBytes("US-ASCII"), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void closeAfterFailureTest() throws IOException {
+        byte[] data = new byte[Main.IO_BUFFER_SIZE + 100];
+        new Random(RANDOM_SEED).nextBytes(data);
+
+        File file = new File(tempFolder.getRoot() + "/write.failure.bin");
+
+        BinaryWriteTool binaryWriteTool = new BinaryWriteTool(file);
+        binaryWriteTool.preallocate(10 * data.length);
+
+        binaryWriteTool.writeBytes(data, 0, data.length);
+        binaryWriteTool.writeBits(1, 3);
+
+        binaryWriteTool.closeAfterFailure();
+
+        // Only what was written is left, not the zeros up to the preallocated length.
+        assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+
+        // Closing again does nothing.
+        binaryWriteTool.closeAfterFailure();
+    }
+
+    /**
+     * Writes one bit at a time, the way the original write tool did, to compare against.
+     */
+    private static final class ReferenceWriter {
+
+        private final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        private int bitBuffer;
+        private int slots;
+
+        void writeBits(long value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+
+                bitBuffer = (bitBuffer << 1) | (int) ((value >>> i) & 1);
+                slots++;
+
+                if (slots == Main.BITS_IN_A_BYTE) {
+                    byteArrayOutputStream.write(bitBuffer);
+                    bitBuffer = 0;
+                    slots = 0;
+                }
+            }
+        }
+
+        void writeString(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                writeBits(value.charAt(i), Main.BITS_IN_A_BYTE);
+            }
+        }
+
+        byte[] toByteArray() {
+            // The last byte is padded with zeros.
+            if (slots > 0) {
+                byteArrayOutputStream.write(bitBuffer << (Main.BITS_IN_A_BYTE - slots));
+            }
+
+            return byteArrayOutputStream.toByteArray();
+        }
+    }
+}
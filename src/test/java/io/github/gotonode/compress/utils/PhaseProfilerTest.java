@@ -0,0 +1,66 @@
+package io.github.gotonode.compress.utils;
+
+import io.github.gotonode.compress.enums.ProfilerCounters;
+import io.github.gotonode.compress.enums.ProfilerPhases;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PhaseProfilerTest {
+
+    private PhaseProfiler phaseProfiler;
+
+    @Before
+    public void before() {
+        phaseProfiler = new PhaseProfiler();
+    }
+
+    @Test
+    public void phaseProfilerTimesPhasesTest() throws InterruptedException {
+
+        phaseProfiler.start(ProfilerPhases.ENCODE);
+        Thread.sleep(5);
+        phaseProfiler.start(ProfilerPhases.IO);
+        Thread.sleep(5);
+        phaseProfiler.stop();
+
+        long encodeTime = phaseProfiler.getTime(ProfilerPhases.ENCODE);
+        long ioTime = phaseProfiler.getTime(ProfilerPhases.IO);
+
+        assertTrue(encodeTime >= 5_000_000L);
+        assertTrue(ioTime >= 5_000_000L);
+        assertEquals(0, phaseProfiler.getTime(ProfilerPhases.DECODE));
+        assertEquals(encodeTime + ioTime, phaseProfiler.getTotalTime());
+
+        // Nothing is going on after stopping.
+        phaseProfiler.stop();
+        assertEquals(ioTime, phaseProfiler.getTime(ProfilerPhases.IO));
+    }
+
+    @Test
+    public void phaseProfilerCountsTest() {
+
+        phaseProfiler.count(ProfilerCounters.CODEWORDS, 10);
+        phaseProfiler.count(ProfilerCounters.CODEWORDS, 5);
+
+        assertEquals(15, phaseProfiler.getCount(ProfilerCounters.CODEWORDS));
+        assertEquals(0, phaseProfiler.getCount(ProfilerCounters.BLOCKS));
+    }
+
+    @Test
+    public void phaseProfilerDisabledTest() {
+
+        PhaseProfiler disabled = PhaseProfiler.DISABLED;
+
+        disabled.start(ProfilerPhases.HISTOGRAM);
+        disabled.count(ProfilerCounters.BLOCKS, 1);
+        disabled.stop();
+
+        assertFalse(disabled.isEnabled());
+        assertEquals(0, disabled.getTotalTime());
+        assertEquals(0, disabled.getCount(ProfilerCounters.BLOCKS));
+    }
+}